@@ -0,0 +1,176 @@
+package com.alliander.owltouml.benchmarks;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.TurtleDocumentFormat;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates synthetic ontologies of a given size. The same seed and sizes always give the same ontology.
+ */
+public class SyntheticOntologyGenerator {
+
+    private static final String BASE = "http://example.org/synthetic/";
+    private static final OWL2Datatype[] DATATYPES = {OWL2Datatype.XSD_STRING, OWL2Datatype.XSD_INT, OWL2Datatype.XSD_BOOLEAN,
+            OWL2Datatype.XSD_DATE_TIME, OWL2Datatype.XSD_DECIMAL};
+
+    private final long seed;
+    private int classes = 1000;
+    private int dataProperties = 500;
+    private int objectProperties = 500;
+    private int prefixes = 8;
+    private int subClassDepth = 5;
+    private int annotationsPerEntity = 2;
+    private int fanOut = 1;
+
+    public SyntheticOntologyGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public void setClasses(int classes) {
+        this.classes = classes;
+    }
+
+    public void setDataProperties(int dataProperties) {
+        this.dataProperties = dataProperties;
+    }
+
+    public void setObjectProperties(int objectProperties) {
+        this.objectProperties = objectProperties;
+    }
+
+    public void setPrefixes(int prefixes) {
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * Sets the length of the longest chain of subclass axioms, reached when there are more classes than the depth
+     */
+    public void setSubClassDepth(int subClassDepth) {
+        this.subClassDepth = subClassDepth;
+    }
+
+    public void setAnnotationsPerEntity(int annotationsPerEntity) {
+        this.annotationsPerEntity = annotationsPerEntity;
+    }
+
+    /**
+     * Sets the number of classes in the domain and in the range of every object property
+     */
+    public void setFanOut(int fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    public OWLOntology generate(OWLOntologyManager manager) throws OWLOntologyCreationException {
+        Random random = new Random(this.seed);
+        OWLDataFactory factory = manager.getOWLDataFactory();
+        OWLOntology ontology = manager.createOntology(IRI.create(BASE + "ontology"));
+        TurtleDocumentFormat format = new TurtleDocumentFormat();
+        for (int i = 0; i < this.prefixes; i++) {
+            format.setPrefix("ns" + i + ":", namespace(i));
+        }
+        manager.setOntologyFormat(ontology, format);
+
+        List<OWLClass> classes = new ArrayList<>(this.classes);
+        List<OWLAxiom> axioms = new ArrayList<>();
+        // a chain of depth subclass axioms has depth + 1 levels, the last level may have fewer classes
+        int levels = Math.max(0, this.subClassDepth) + 1;
+        int levelSize = Math.max(1, (this.classes + levels - 1) / levels);
+        for (int i = 0; i < this.classes; i++) {
+            OWLClass cls = factory.getOWLClass(entityIri(random, "Class", i));
+            classes.add(cls);
+            axioms.add(factory.getOWLDeclarationAxiom(cls));
+            annotate(factory, random, cls.getIRI(), axioms);
+            // classes are spread over the levels, every class below the first level has a parent one level up
+            if (i >= levelSize) {
+                int parent = (i / levelSize - 1) * levelSize + random.nextInt(levelSize);
+                axioms.add(factory.getOWLSubClassOfAxiom(cls, classes.get(parent)));
+            }
+        }
+        for (int i = 0; i < this.dataProperties; i++) {
+            OWLDataProperty dp = factory.getOWLDataProperty(entityIri(random, "dataProperty", i));
+            axioms.add(factory.getOWLDeclarationAxiom(dp));
+            axioms.add(factory.getOWLDataPropertyDomainAxiom(dp, pick(random, classes)));
+            axioms.add(factory.getOWLDataPropertyRangeAxiom(dp, DATATYPES[random.nextInt(DATATYPES.length)].getDatatype(factory)));
+            annotate(factory, random, dp.getIRI(), axioms);
+        }
+        for (int i = 0; i < this.objectProperties; i++) {
+            OWLObjectProperty op = factory.getOWLObjectProperty(entityIri(random, "objectProperty", i));
+            axioms.add(factory.getOWLDeclarationAxiom(op));
+            axioms.add(factory.getOWLObjectPropertyDomainAxiom(op, union(factory, random, classes)));
+            axioms.add(factory.getOWLObjectPropertyRangeAxiom(op, union(factory, random, classes)));
+            annotate(factory, random, op.getIRI(), axioms);
+        }
+        ontology.add(axioms);
+        return ontology;
+    }
+
+    /**
+     * Generates the ontology and saves it as Turtle
+     */
+    public File write(File file) throws OWLOntologyCreationException, OWLOntologyStorageException {
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        OWLOntology ontology = generate(manager);
+        manager.saveOntology(ontology, manager.getOntologyFormat(ontology), IRI.create(file));
+        return file;
+    }
+
+    private IRI entityIri(Random random, String kind, int i) {
+        return IRI.create(namespace(random.nextInt(Math.max(1, this.prefixes))), kind + i);
+    }
+
+    private static String namespace(int i) {
+        return BASE + "ns" + i + "#";
+    }
+
+    private OWLClassExpression pick(Random random, List<OWLClass> classes) {
+        return classes.get(random.nextInt(classes.size()));
+    }
+
+    private OWLClassExpression union(OWLDataFactory factory, Random random, List<OWLClass> classes) {
+        if (this.fanOut <= 1) return pick(random, classes);
+        Set<OWLClassExpression> operands = new HashSet<>();
+        while (operands.size() < Math.min(this.fanOut, classes.size())) operands.add(pick(random, classes));
+        return factory.getOWLObjectUnionOf(operands);
+    }
+
+    private void annotate(OWLDataFactory factory, Random random, IRI subject, List<OWLAxiom> axioms) {
+        for (int i = 0; i < this.annotationsPerEntity; i++) {
+            OWLAnnotationProperty property = i % 2 == 0 ? factory.getRDFSLabel() : factory.getRDFSComment();
+            axioms.add(factory.getOWLAnnotationAssertionAxiom(property, subject, factory.getOWLLiteral(text(random), "en")));
+        }
+    }
+
+    private static String text(Random random) {
+        StringBuilder text = new StringBuilder();
+        int words = 3 + random.nextInt(20);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) text.append(' ');
+            int length = 2 + random.nextInt(8);
+            for (int j = 0; j < length; j++) text.append((char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes a synthetic ontology, usage: file seed classes dataProperties objectProperties prefixes depth annotations fanOut
+     */
+    public static void main(String[] args) throws Exception {
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(args.length > 1 ? Long.parseLong(args[1]) : 42);
+        if (args.length > 2) generator.setClasses(Integer.parseInt(args[2]));
+        if (args.length > 3) generator.setDataProperties(Integer.parseInt(args[3]));
+        if (args.length > 4) generator.setObjectProperties(Integer.parseInt(args[4]));
+        if (args.length > 5) generator.setPrefixes(Integer.parseInt(args[5]));
+        if (args.length > 6) generator.setSubClassDepth(Integer.parseInt(args[6]));
+        if (args.length > 7) generator.setAnnotationsPerEntity(Integer.parseInt(args[7]));
+        if (args.length > 8) generator.setFanOut(Integer.parseInt(args[8]));
+        generator.write(new File(args[0]));
+    }
+}
@@ -0,0 +1,142 @@
+package com.alliander.owltouml.converter;
+
+import com.alliander.owltouml.benchmarks.SyntheticOntologyGenerator;
+import org.eclipse.uml2.uml.Model;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of loading a synthetic ontology, the full conversion and each conversion phase on its own. The phase
+ * benchmarks run the preceding phases in an untimed setup before every invocation, JMH runs the setup of a
+ * superclass state before the setup of its subclass.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConverterBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Ontology {
+        @Param({"1000", "10000", "100000", "1000000"})
+        public int entities;
+        @Param({"1"})
+        public int fanOut;
+        @Param({"1"})
+        public int parallelism;
+
+        File file;
+        OwlToUmlConverter converter;
+
+        @Setup(Level.Trial)
+        public void generate() throws Exception {
+            SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(42);
+            generator.setClasses(this.entities);
+            generator.setDataProperties(this.entities / 2);
+            generator.setObjectProperties(this.entities / 2);
+            generator.setFanOut(this.fanOut);
+            this.file = File.createTempFile("synthetic", ".ttl");
+            generator.write(this.file);
+            this.converter = load(this.file, this.parallelism);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() {
+            this.file.delete();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AfterStart {
+        OwlToUmlConverter converter;
+
+        @Setup(Level.Invocation)
+        public void start(Ontology ontology) {
+            this.converter = ontology.converter;
+            this.converter.startConversion();
+        }
+
+        @TearDown(Level.Invocation)
+        public void finish() {
+            this.converter.finishConversion();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AfterPrefixes extends AfterStart {
+        @Setup(Level.Invocation)
+        public void prefixes() {
+            this.converter.processPrefixes();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AfterClasses extends AfterPrefixes {
+        @Setup(Level.Invocation)
+        public void classes() {
+            this.converter.processClasses();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AfterDataProperties extends AfterClasses {
+        @Setup(Level.Invocation)
+        public void dataProperties() {
+            this.converter.processDataProperties();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AfterObjectProperties extends AfterDataProperties {
+        @Setup(Level.Invocation)
+        public void objectProperties() {
+            this.converter.processObjectProperties();
+        }
+    }
+
+    static OwlToUmlConverter load(File file, int parallelism) throws Exception {
+        OwlToUmlConverter converter = new OwlToUmlConverter();
+        converter.setParallelism(parallelism);
+        converter.loadOntology(file.toURI().toString(), "synthetic");
+        return converter;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public OwlToUmlConverter loadOntology(Ontology ontology) throws Exception {
+        return load(ontology.file, ontology.parallelism);
+    }
+
+    @Benchmark
+    public Model convertToUml(Ontology ontology) {
+        return ontology.converter.convertToUml();
+    }
+
+    @Benchmark
+    public void processPrefixes(AfterStart state) {
+        state.converter.processPrefixes();
+    }
+
+    @Benchmark
+    public void processClasses(AfterPrefixes state) {
+        state.converter.processClasses();
+    }
+
+    @Benchmark
+    public void processDataProperties(AfterClasses state) {
+        state.converter.processDataProperties();
+    }
+
+    @Benchmark
+    public void processObjectProperties(AfterDataProperties state) {
+        state.converter.processObjectProperties();
+    }
+
+    @Benchmark
+    public void processSubClassOf(AfterObjectProperties state) {
+        state.converter.processSubClassOf();
+    }
+}
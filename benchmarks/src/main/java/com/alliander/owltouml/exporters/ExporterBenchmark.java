@@ -0,0 +1,126 @@
+package com.alliander.owltouml.exporters;
+
+import com.alliander.owltouml.benchmarks.SyntheticOntologyGenerator;
+import com.alliander.owltouml.converter.OwlToUmlConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the full export of a converted synthetic ontology and of each export stage on its own. The stage
+ * benchmarks run the preceding stages in an untimed setup before every invocation. Every entity has annotations,
+ * which are exported as notes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExporterBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Converted {
+        @Param({"1000", "10000", "100000", "1000000"})
+        public int entities;
+        @Param({"false", "true"})
+        public boolean streaming;
+
+        File directory;
+        EnterpriseArchitectNativeExporter exporter;
+
+        @Setup(Level.Trial)
+        public void convert() throws Exception {
+            SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(42);
+            generator.setClasses(this.entities);
+            generator.setDataProperties(this.entities / 2);
+            generator.setObjectProperties(this.entities / 2);
+            generator.setAnnotationsPerEntity(2);
+            this.directory = File.createTempFile("export", "");
+            this.directory.delete();
+            this.directory.mkdirs();
+            File ontology = generator.write(new File(this.directory, "synthetic.ttl"));
+            OwlToUmlConverter converter = new OwlToUmlConverter();
+            // the notes are rendered by the exporter, as in the command line tool
+            converter.setAnnotationComments(false);
+            converter.loadOntology(ontology.toURI().toString(), "synthetic");
+            this.exporter = new EnterpriseArchitectNativeExporter();
+            this.exporter.setUmlModel(converter.convertToUml());
+            this.exporter.setStreaming(this.streaming);
+            this.exporter.setSourceIris(converter.getSourceIris());
+            this.exporter.setAnnotations(converter::getAnnotations);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() {
+            File[] files = this.directory.listFiles();
+            if (files != null) for (File file : files) file.delete();
+            this.directory.delete();
+        }
+
+        File target() {
+            return new File(this.directory, "synthetic.xml");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Opened {
+        EnterpriseArchitectNativeExporter exporter;
+        boolean closed;
+
+        @Setup(Level.Invocation)
+        public void open(Converted converted) throws Exception {
+            this.exporter = converted.exporter;
+            this.exporter.open(converted.target());
+            this.closed = false;
+        }
+
+        @TearDown(Level.Invocation)
+        public void close() throws Exception {
+            // release the writer of stages that did not get to close it
+            if (!this.closed) this.exporter.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ObjectsWritten extends Opened {
+        @Setup(Level.Invocation)
+        public void objects() throws Exception {
+            this.exporter.processObjects();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ConnectorsWritten extends ObjectsWritten {
+        @Setup(Level.Invocation)
+        public void connectors() throws Exception {
+            this.exporter.processConnectors();
+        }
+    }
+
+    @Benchmark
+    public File export(Converted converted) throws Exception {
+        String name = new File(converted.directory, "synthetic").getPath();
+        converted.exporter.export(name);
+        return converted.target();
+    }
+
+    @Benchmark
+    public void processObjects(Opened state) throws Exception {
+        state.exporter.processObjects();
+    }
+
+    @Benchmark
+    public void processConnectors(ObjectsWritten state) throws Exception {
+        state.exporter.processConnectors();
+    }
+
+    /**
+     * Serialization of the rows to the file, the transform of the DOM or the concatenation of the spool files
+     */
+    @Benchmark
+    public void close(ConnectorsWritten state) throws Exception {
+        state.exporter.close();
+        state.closed = true;
+    }
+}
@@ -1,18 +1,33 @@
 package com.alliander.owltouml;
 
+import com.alliander.owltouml.batch.BatchConverter;
+import com.alliander.owltouml.batch.BatchJob;
+import com.alliander.owltouml.converter.AnnotationFilter;
+import com.alliander.owltouml.converter.AssociationStrategy;
 import com.alliander.owltouml.converter.OwlToUmlConverter;
 import com.alliander.owltouml.exporters.EnterpriseArchitectNativeExporter;
+import com.alliander.owltouml.exporters.OutputFormat;
+import com.alliander.owltouml.loader.LocalOntologyStore;
+import com.alliander.owltouml.metrics.ConversionMetrics;
+import com.alliander.owltouml.server.ConversionServer;
+import com.alliander.owltouml.watch.OntologyWatcher;
 import org.apache.commons.cli.*;
+import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.slf4j.event.Level;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
     
-    public static void main(String[] args) throws OWLOntologyCreationException, TransformerException, ParserConfigurationException {
+    public static void main(String[] args) throws OWLOntologyCreationException, TransformerException, ParserConfigurationException, IOException, InterruptedException {
         Options options = new Options();
         Option ontology = Option.builder("o")
                 .longOpt("ontology")
@@ -26,21 +41,272 @@ public class Main {
                 .argName("prefix")
                 .desc("Specify the prefix of the ontology.")
                 .build();
+        Option stream = Option.builder("s")
+                .longOpt("stream")
+                .desc("Write the export directly to disk instead of building it in memory.")
+                .build();
+        Option deterministic = Option.builder("d")
+                .longOpt("deterministic")
+                .desc("Derive GUIDs from the ontology IRIs, so repeated exports are identical.")
+                .build();
+        Option timestamp = Option.builder("t")
+                .longOpt("timestamp")
+                .hasArg()
+                .argName("yyyy-MM-dd HH:mm:ss")
+                .desc("Specify the creation date written to the export, defaults to now.")
+                .build();
+        Option parallelism = Option.builder("j")
+                .longOpt("parallelism")
+                .hasArg()
+                .argName("threads")
+                .desc("Specify the number of threads used to analyse the ontology and to write partitions, defaults to 1.")
+                .build();
+        Option cache = Option.builder()
+                .longOpt("cache")
+                .hasArg()
+                .argName("directory")
+                .desc("Specify a directory in which fetched ontology documents are cached.")
+                .build();
+        Option catalog = Option.builder()
+                .longOpt("catalog")
+                .hasArg()
+                .argName("file")
+                .desc("Specify an OASIS catalog file or a directory of ontology documents to resolve IRIs locally.")
+                .build();
+        Option offline = Option.builder()
+                .longOpt("offline")
+                .desc("Only load ontologies from the catalog and the cache.")
+                .build();
+        Option snapshots = Option.builder()
+                .longOpt("snapshots")
+                .hasArg()
+                .argName("directory")
+                .desc("Specify a directory for binary snapshots of loaded ontologies, to skip parsing on later runs.")
+                .build();
+        Option metrics = Option.builder()
+                .longOpt("metrics")
+                .hasArg()
+                .argName("file")
+                .desc("Specify a file to write the time, allocations and counts of each stage to, as JSON.")
+                .build();
+        Option diagnostics = Option.builder()
+                .longOpt("diagnostics")
+                .hasArg()
+                .argName("level")
+                .desc("Specify the log level of the summary of ignored IRIs, defaults to WARN.")
+                .build();
+        Option batch = Option.builder("b")
+                .longOpt("batch")
+                .hasArg()
+                .argName("manifest")
+                .desc("Convert all ontologies in a manifest with lines of <ontology> <prefix> [output] in one process.")
+                .build();
+        Option workers = Option.builder()
+                .longOpt("workers")
+                .hasArg()
+                .argName("jobs")
+                .desc("Specify the number of batch jobs that run at the same time, defaults to the number of processors.")
+                .build();
+        Option serve = Option.builder()
+                .longOpt("serve")
+                .hasArg()
+                .argName("port")
+                .desc("Keep running and serve conversions over HTTP on the given local port.")
+                .build();
+        Option update = Option.builder()
+                .longOpt("update")
+                .hasArg()
+                .argName("uri")
+                .desc("Specify a new version of the ontology, its changes are exported to <prefix>.delta.xml.")
+                .build();
+        Option watch = Option.builder()
+                .longOpt("watch")
+                .desc("Keep running and export again when the local ontology documents change.")
+                .build();
+        Option direct = Option.builder()
+                .longOpt("direct")
+                .desc("Write the export while converting, without building a UML model in memory.")
+                .build();
+        Option partition = Option.builder()
+                .longOpt("partition")
+                .desc("Export every namespace to its own file, written in parallel, with an index file <prefix>.index.xml.")
+                .build();
+        Option compress = Option.builder("z")
+                .longOpt("compress")
+                .hasArg()
+                .argName("format")
+                .desc("Specify the format of the export: xml, gzip or zip, defaults to xml.")
+                .build();
+        Option compressInBackground = Option.builder()
+                .longOpt("compress-in-background")
+                .desc("Compress the export on a separate thread while it is written.")
+                .build();
+        Option qea = Option.builder()
+                .longOpt("qea")
+                .hasArg()
+                .argName("template")
+                .desc("Export into a copy of the given empty EA project, <prefix>.qea, instead of XML.")
+                .build();
+        Option diagrams = Option.builder()
+                .longOpt("diagrams")
+                .desc("Generate a diagram of the classes of every namespace.")
+                .build();
+        Option diagramSize = Option.builder()
+                .longOpt("diagram-size")
+                .hasArg()
+                .argName("classes")
+                .desc("Specify the maximum number of classes on a diagram, defaults to 100.")
+                .build();
+        Option associations = Option.builder()
+                .longOpt("associations")
+                .hasArg()
+                .argName("strategy")
+                .desc("Specify how object properties with many domain and range classes are converted: cross_product or union_class, defaults to cross_product.")
+                .build();
+        Option associationThreshold = Option.builder()
+                .longOpt("association-threshold")
+                .hasArg()
+                .argName("pairs")
+                .desc("Specify the largest number of domain and range pairs that is always converted to the cross product by union_class, defaults to 1.")
+                .build();
+        Option annotationProperties = Option.builder()
+                .longOpt("annotation-properties")
+                .hasArg()
+                .argName("iris")
+                .desc("Only convert annotations of the given comma separated annotation property IRIs, e.g. http://www.w3.org/2000/01/rdf-schema#comment.")
+                .build();
+        Option languages = Option.builder()
+                .longOpt("languages")
+                .hasArg()
+                .argName("tags")
+                .desc("Only convert annotations in the given comma separated languages, e.g. en,nl. Values without a language are always converted.")
+                .build();
+        Option annotationLength = Option.builder()
+                .longOpt("annotation-length")
+                .hasArg()
+                .argName("characters")
+                .desc("Truncate annotations longer than the given number of characters.")
+                .build();
+        Option parallelImports = Option.builder()
+                .longOpt("parallel-imports")
+                .hasArg()
+                .argName("threads")
+                .desc("Discover the imports of the ontology and parse the documents on the given number of threads.")
+                .build();
+        Option importTimeout = Option.builder()
+                .longOpt("import-timeout")
+                .hasArg()
+                .argName("seconds")
+                .desc("Specify the time a single document may take to parse with --parallel-imports, an import that takes longer is left out. Also bounds connecting and each read when the cache fetches a document. Defaults to 300.")
+                .build();
         options.addOption(ontology);
         options.addOption(prefix);
+        options.addOption(stream);
+        options.addOption(deterministic);
+        options.addOption(timestamp);
+        options.addOption(parallelism);
+        options.addOption(cache);
+        options.addOption(catalog);
+        options.addOption(offline);
+        options.addOption(snapshots);
+        options.addOption(metrics);
+        options.addOption(diagnostics);
+        options.addOption(batch);
+        options.addOption(workers);
+        options.addOption(serve);
+        options.addOption(update);
+        options.addOption(watch);
+        options.addOption(direct);
+        options.addOption(partition);
+        options.addOption(compress);
+        options.addOption(compressInBackground);
+        options.addOption(qea);
+        options.addOption(diagrams);
+        options.addOption(diagramSize);
+        options.addOption(associations);
+        options.addOption(associationThreshold);
+        options.addOption(annotationProperties);
+        options.addOption(languages);
+        options.addOption(annotationLength);
+        options.addOption(parallelImports);
+        options.addOption(importTimeout);
         CommandLineParser parser = new DefaultParser();
         HelpFormatter formatter = new HelpFormatter();
         try {
             CommandLine cmd = parser.parse( options, args);
-            if (cmd.hasOption("ontology") && cmd.hasOption("prefix")) {
+            if (cmd.hasOption("serve")) {
+                ConversionServer server = new ConversionServer();
+                LocalOntologyStore store = createStore(cmd);
+                if (store != null) server.addIRIMapper(store);
+                if (cmd.hasOption("workers"))
+                    server.setWorkers(Integer.parseInt(cmd.getOptionValue("workers")));
+                if (cmd.hasOption("qea")) {
+                    System.out.println("A project file cannot be written as a response, --serve cannot be combined with --qea");
+                    System.exit(1);
+                }
+                server.setConverterSettings(converter -> configure(converter, cmd));
+                server.setExporterSettings(exporter -> configure(exporter, cmd));
+                server.start(Integer.parseInt(cmd.getOptionValue("serve")));
+            } else if (cmd.hasOption("batch")) {
+                if (cmd.hasOption("metrics") || cmd.hasOption("partition") || cmd.hasOption("update") || cmd.hasOption("watch") || cmd.hasOption("direct")) {
+                    System.out.println("The --metrics, --partition, --update, --watch and --direct options apply to a single ontology, they cannot be combined with --batch");
+                    System.exit(1);
+                }
+                BatchConverter converter = new BatchConverter();
+                LocalOntologyStore store = createStore(cmd);
+                if (store != null) converter.addIRIMapper(store);
+                if (cmd.hasOption("workers"))
+                    converter.setWorkers(Integer.parseInt(cmd.getOptionValue("workers")));
+                converter.setConverterSettings(job -> configure(job, cmd));
+                converter.setExporterSettings(job -> configure(job, cmd));
+                if (converter.run(BatchJob.readManifest(Paths.get(cmd.getOptionValue("batch")))) > 0) System.exit(1);
+            } else if (cmd.hasOption("ontology") && cmd.hasOption("prefix")) {
+                if (cmd.hasOption("qea") && (cmd.hasOption("partition") || cmd.hasOption("update"))) {
+                    System.out.println("The --partition and --update options write several files that refer to each other, they cannot be combined with --qea");
+                    System.exit(1);
+                }
 
+                ConversionMetrics conversionMetrics = new ConversionMetrics(cmd.getOptionValue("prefix"));
+                conversionMetrics.registerMXBeans();
                 OwlToUmlConverter converter = new OwlToUmlConverter();
+                converter.setMetrics(conversionMetrics);
+                LocalOntologyStore store = createStore(cmd);
+                if (store != null) converter.addIRIMapper(store);
+                configure(converter, cmd);
                 converter.loadOntology(cmd.getOptionValue("ontology"), cmd.getOptionValue("prefix"));
                 EnterpriseArchitectNativeExporter exporter = new EnterpriseArchitectNativeExporter();
-                exporter.setUmlModel(converter.convertToUml());
-                exporter.export(cmd.getOptionValue("prefix"));
+                exporter.setMetrics(conversionMetrics);
+                configure(exporter, cmd);
+                if (cmd.hasOption("direct")) {
+                    if (cmd.hasOption("update") || cmd.hasOption("watch") || cmd.hasOption("partition") || cmd.hasOption("diagrams")) {
+                        System.out.println("The --update, --watch, --partition and --diagrams options need the UML model, they cannot be combined with --direct");
+                        System.exit(1);
+                    }
+                    converter.convert(exporter.openSink(cmd.getOptionValue("prefix")));
+                } else {
+                    exporter.setUmlModel(converter.convertToUml());
+                    exporter.setSourceIris(converter.getSourceIris());
+                    exporter.setAnnotations(converter::getAnnotations);
+                    if (cmd.hasOption("partition")) {
+                        exporter.exportPartitioned(cmd.getOptionValue("prefix"), Integer.parseInt(cmd.getOptionValue("parallelism", "1")));
+                    } else {
+                        exporter.export(cmd.getOptionValue("prefix"));
+                    }
+                }
+                if (cmd.hasOption("update"))
+                    exporter.exportChanges(cmd.getOptionValue("prefix"), converter.updateOntology(cmd.getOptionValue("update")));
+                if (cmd.hasOption("metrics"))
+                    conversionMetrics.writeJson(Paths.get(cmd.getOptionValue("metrics")));
+                if (cmd.hasOption("watch")) {
+                    OntologyWatcher watcher = new OntologyWatcher(converter, exporter, cmd.getOptionValue("prefix"));
+                    if (cmd.hasOption("partition"))
+                        watcher.setPartitionThreads(Integer.parseInt(cmd.getOptionValue("parallelism", "1")));
+                    if (cmd.hasOption("metrics"))
+                        watcher.setMetricsFile(Paths.get(cmd.getOptionValue("metrics")));
+                    watcher.run();
+                }
             } else {
-                System.out.println("Please enter both the ontology uri and the prefix --ontology example-prefix --prefix example-prefix");
+                System.out.println("Please enter both the ontology uri and the prefix --ontology example-prefix --prefix example-prefix, or a manifest --batch manifest.txt");
             }
         } catch (ParseException e) {
             System.out.println(e.getMessage());
@@ -48,4 +314,68 @@ public class Main {
             System.exit(1);
         }
     }
+
+    /**
+     * Applies the conversion options to a converter, the ontology store and metrics are set by the caller
+     */
+    private static void configure(OwlToUmlConverter converter, CommandLine cmd) {
+        if (cmd.hasOption("snapshots"))
+            converter.setSnapshotDirectory(Paths.get(cmd.getOptionValue("snapshots")));
+        converter.setImportThreads(Integer.parseInt(cmd.getOptionValue("parallel-imports", "1")));
+        converter.setImportTimeout(Long.parseLong(cmd.getOptionValue("import-timeout", "300")));
+        if (cmd.hasOption("diagnostics"))
+            converter.getDiagnostics().setLevel(Level.valueOf(cmd.getOptionValue("diagnostics").toUpperCase()));
+        converter.setParallelism(Integer.parseInt(cmd.getOptionValue("parallelism", "1")));
+        converter.setAssociationStrategy(AssociationStrategy.valueOf(cmd.getOptionValue("associations", "cross_product").toUpperCase()));
+        if (cmd.hasOption("association-threshold"))
+            converter.setAssociationThreshold(Integer.parseInt(cmd.getOptionValue("association-threshold")));
+        converter.setAnnotationFilter(createAnnotationFilter(cmd));
+        // the exporter renders the notes itself, once per entity
+        converter.setAnnotationComments(false);
+    }
+
+    /**
+     * Applies the export options to an exporter
+     */
+    private static void configure(EnterpriseArchitectNativeExporter exporter, CommandLine cmd) {
+        exporter.setStreaming(cmd.hasOption("stream"));
+        exporter.setOutputFormat(OutputFormat.valueOf(cmd.getOptionValue("compress", "xml").toUpperCase()));
+        exporter.setBackgroundCompression(cmd.hasOption("compress-in-background"));
+        if (cmd.hasOption("qea")) {
+            exporter.setOutputFormat(OutputFormat.QEA);
+            exporter.setProjectTemplate(Paths.get(cmd.getOptionValue("qea")));
+        }
+        exporter.setDiagrams(cmd.hasOption("diagrams"));
+        exporter.setDiagramSize(Integer.parseInt(cmd.getOptionValue("diagram-size", "100")));
+        exporter.setDeterministic(cmd.hasOption("deterministic"));
+        if (cmd.hasOption("timestamp"))
+            exporter.setTimestamp(LocalDateTime.parse(cmd.getOptionValue("timestamp"), DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+    }
+
+    /**
+     * @return the annotation filter configured by the annotation-properties, languages and annotation-length options
+     */
+    private static AnnotationFilter createAnnotationFilter(CommandLine cmd) {
+        AnnotationFilter filter = new AnnotationFilter();
+        if (cmd.hasOption("annotation-properties")) {
+            for (String property : cmd.getOptionValue("annotation-properties").split(",")) filter.addProperty(IRI.create(property.trim()));
+        }
+        if (cmd.hasOption("languages")) {
+            for (String language : cmd.getOptionValue("languages").split(",")) filter.addLanguage(language.trim());
+        }
+        if (cmd.hasOption("annotation-length"))
+            filter.setMaxLength(Integer.parseInt(cmd.getOptionValue("annotation-length")));
+        return filter;
+    }
+
+    /**
+     * @return the local ontology store configured by the cache, catalog and offline options, or null if none is set
+     */
+    private static LocalOntologyStore createStore(CommandLine cmd) throws IOException {
+        if (!cmd.hasOption("cache") && !cmd.hasOption("catalog") && !cmd.hasOption("offline")) return null;
+        LocalOntologyStore store = new LocalOntologyStore(cmd.hasOption("cache") ? Paths.get(cmd.getOptionValue("cache")) : null, cmd.hasOption("offline"));
+        if (cmd.hasOption("catalog")) store.addCatalog(new File(cmd.getOptionValue("catalog")));
+        store.setTimeout(Long.parseLong(cmd.getOptionValue("import-timeout", "300")), TimeUnit.SECONDS);
+        return store;
+    }
 }
@@ -0,0 +1,109 @@
+package com.alliander.owltouml.batch;
+
+import com.alliander.owltouml.converter.OwlToUmlConverter;
+import com.alliander.owltouml.exporters.EnterpriseArchitectNativeExporter;
+import com.alliander.owltouml.metrics.ConversionMetrics;
+import org.semanticweb.owlapi.model.OWLOntologyIRIMapper;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Converts many ontologies in one process. The jobs share one thread-safe ontology manager, so imports they have in
+ * common are parsed once, and independent jobs run concurrently on a bounded number of workers.
+ */
+public class BatchConverter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchConverter.class);
+
+    private final OWLOntologyManager manager = OwlToUmlConverter.createSharedManager();
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private Consumer<OwlToUmlConverter> converterSettings = converter -> { };
+    private Consumer<EnterpriseArchitectNativeExporter> exporterSettings = exporter -> { };
+
+    /**
+     * Adds a mapper that resolves ontology and import IRIs to documents for all jobs
+     */
+    public void addIRIMapper(OWLOntologyIRIMapper mapper) {
+        this.manager.getIRIMappers().add(mapper);
+    }
+
+    /**
+     * Sets the number of jobs that run at the same time, defaults to the number of processors
+     */
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Sets the settings applied to the converter of every job, the IRI mappers belong to the shared manager
+     */
+    public void setConverterSettings(Consumer<OwlToUmlConverter> converterSettings) {
+        this.converterSettings = converterSettings;
+    }
+
+    /**
+     * Sets the settings applied to the exporter of every job
+     */
+    public void setExporterSettings(Consumer<EnterpriseArchitectNativeExporter> exporterSettings) {
+        this.exporterSettings = exporterSettings;
+    }
+
+    /**
+     * Runs the jobs, a failed job is reported and does not stop the others
+     *
+     * @return the number of failed jobs
+     */
+    public int run(List<BatchJob> jobs) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(this.workers, jobs.size())));
+        int failed = 0;
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (BatchJob job : jobs) {
+                results.add(executor.submit(() -> {
+                    convert(job);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < jobs.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    LOG.warn("Failed converting {}: {}", jobs.get(i).ontology, e.getCause().toString());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        LOG.info("Converted {} of {} ontologies", jobs.size() - failed, jobs.size());
+        return failed;
+    }
+
+    private void convert(BatchJob job) throws Exception {
+        long start = System.nanoTime();
+        ConversionMetrics metrics = new ConversionMetrics(job.prefix);
+        OwlToUmlConverter converter = new OwlToUmlConverter(this.manager);
+        this.converterSettings.accept(converter);
+        converter.setMetrics(metrics);
+        converter.loadOntology(job.ontology, job.prefix);
+        EnterpriseArchitectNativeExporter exporter = new EnterpriseArchitectNativeExporter();
+        this.exporterSettings.accept(exporter);
+        exporter.setUmlModel(converter.convertToUml());
+        exporter.setMetrics(metrics);
+        exporter.setSourceIris(converter.getSourceIris());
+        exporter.setAnnotations(converter::getAnnotations);
+        File file = exporter.getFile(job.output, "");
+        exporter.export(file);
+        LOG.info("Converted {} to {} in {} ms", job.ontology, file, (System.nanoTime() - start) / 1000000);
+    }
+}
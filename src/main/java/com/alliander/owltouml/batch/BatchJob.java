@@ -0,0 +1,59 @@
+package com.alliander.owltouml.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single conversion of a batch: the ontology, its prefix and the name of the exported file without extension
+ */
+public class BatchJob {
+
+    final String ontology;
+    final String prefix;
+    final String output;
+
+    public BatchJob(String ontology, String prefix, String output) {
+        this.ontology = ontology;
+        this.prefix = prefix;
+        this.output = output;
+    }
+
+    /**
+     * Reads a manifest with one job per line: the ontology uri, the prefix and optionally the output name, which
+     * defaults to the prefix. Fields are separated by whitespace, empty lines and lines starting with # are skipped.
+     */
+    public static List<BatchJob> readManifest(Path manifest) throws IOException {
+        List<BatchJob> jobs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\\s+");
+                if (fields.length < 2 || fields.length > 3)
+                    throw new IOException(manifest + ":" + number + ": expected <ontology> <prefix> [output]");
+                jobs.add(new BatchJob(fields[0], fields[1], fields.length == 3 ? fields[2] : fields[1]));
+            }
+        }
+        return jobs;
+    }
+
+    public String getOntology() {
+        return this.ontology;
+    }
+
+    public String getPrefix() {
+        return this.prefix;
+    }
+
+    public String getOutput() {
+        return this.output;
+    }
+}
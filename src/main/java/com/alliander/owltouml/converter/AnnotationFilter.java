@@ -0,0 +1,59 @@
+package com.alliander.owltouml.converter;
+
+import org.semanticweb.owlapi.model.IRI;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Selects the annotations that are converted, by annotation property and by the language of literal values, and
+ * caps their length. Without any property or language every annotation is kept.
+ */
+public class AnnotationFilter {
+
+    private static final String ELLIPSIS = "...";
+
+    private final Set<IRI> properties = new HashSet<>();
+    private final Set<String> languages = new HashSet<>();
+    private int maxLength = Integer.MAX_VALUE;
+
+    /**
+     * Keeps the annotations of the given property, once a property is added all others are dropped
+     */
+    public void addProperty(IRI property) {
+        this.properties.add(property);
+    }
+
+    /**
+     * Keeps literals in the given language or one of its regional variants, e.g. "en" also keeps "en-GB". Once a
+     * language is added literals in other languages are dropped, values without a language are always kept.
+     */
+    public void addLanguage(String language) {
+        this.languages.add(language.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Truncates annotations that are longer than the given number of characters
+     */
+    public void setMaxLength(int maxLength) {
+        if (maxLength <= ELLIPSIS.length()) throw new IllegalArgumentException("Maximum length must be more than " + ELLIPSIS.length());
+        this.maxLength = maxLength;
+    }
+
+    boolean accepts(OntologyIndex.Annotation annotation) {
+        if (!this.properties.isEmpty() && !this.properties.contains(annotation.property)) return false;
+        if (this.languages.isEmpty() || annotation.language.isEmpty()) return true;
+        String language = annotation.language.toLowerCase(Locale.ROOT);
+        int region = language.indexOf('-');
+        return this.languages.contains(language) || region > 0 && this.languages.contains(language.substring(0, region));
+    }
+
+    /**
+     * @return the text of an accepted annotation, truncated to the maximum length
+     */
+    String getText(OntologyIndex.Annotation annotation) {
+        if (annotation.text.length() <= this.maxLength) return annotation.text;
+        return annotation.text.substring(0, this.maxLength - ELLIPSIS.length()) + ELLIPSIS;
+    }
+}
@@ -0,0 +1,16 @@
+package com.alliander.owltouml.converter;
+
+/**
+ * How the associations of an object property are created when its domain and range contain many classes
+ */
+public enum AssociationStrategy {
+    /**
+     * An association between every class in the domain and every class in the range
+     */
+    CROSS_PRODUCT,
+    /**
+     * A single association between generated abstract classes for the union of the domain and of the range, the
+     * classes in a union are its subclasses
+     */
+    UNION_CLASS
+}
@@ -0,0 +1,42 @@
+package com.alliander.owltouml.converter;
+
+import org.semanticweb.owlapi.model.IRI;
+
+import java.util.List;
+
+/**
+ * Receives the converted entities one at a time, as an alternative to building a UML model. Packages are passed
+ * before the classes they contain, and classes before the attributes, associations and generalizations that refer
+ * to them. Implementations report write errors as unchecked exceptions.
+ */
+public interface ConversionSink {
+
+    /**
+     * Starts the conversion, all packages are nested in a root package with the given name
+     */
+    void start(String rootName);
+
+    /**
+     * @param namespace the namespace of the package, or null for a package that is not declared as prefix
+     */
+    void addPackage(String name, IRI namespace, List<String> annotations);
+
+    void addClass(IRI iri, String packageName, String name, List<String> annotations);
+
+    /**
+     * Adds an attribute of a data property to a class added before
+     */
+    void addAttribute(IRI iri, IRI owner, String name, String type, List<String> annotations);
+
+    /**
+     * Adds a uni-directional association of an object property, navigable from source to target
+     */
+    void addAssociation(IRI iri, IRI source, IRI target, String name, List<String> annotations);
+
+    void addGeneralization(IRI specific, IRI general);
+
+    /**
+     * Finishes the conversion, no entities are added after this
+     */
+    void finish();
+}
@@ -0,0 +1,132 @@
+package com.alliander.owltouml.converter;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the warnings of a conversion, counted by reason and namespace with a bounded sample of IRIs, so the hot
+ * loops do not write a line per ignored IRI. The collected warnings are reported once, at the end of the conversion.
+ */
+public class Diagnostics {
+
+    public enum Reason {
+        UNKNOWN_PREFIX("no prefix matches the IRI"),
+        NOT_A_CLASS("the IRI is not converted to a class"),
+        UNCONVERTED_SUBCLASS("subClassOf ignored, the subclass is not converted"),
+        UNCONVERTED_SUPERCLASS("subClassOf ignored, the superclass is not converted");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return this.description;
+        }
+    }
+
+    private final ConcurrentMap<Reason, ConcurrentMap<String, Entry>> entries = new ConcurrentHashMap<>();
+    private int sampleSize = 5;
+    private Level level = Level.WARN;
+
+    /**
+     * Sets the number of IRIs kept as example for each reason and namespace
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Sets the level the report is logged at
+     */
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    void warn(Reason reason, IRI iri) {
+        this.entries.computeIfAbsent(reason, r -> new ConcurrentHashMap<>())
+                .computeIfAbsent(iri.getNamespace(), n -> new Entry())
+                .add(iri, this.sampleSize);
+    }
+
+    void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * @return the number of warnings for a reason
+     */
+    public long getCount(Reason reason) {
+        Map<String, Entry> namespaces = this.entries.get(reason);
+        if (namespaces == null) return 0;
+        long count = 0;
+        for (Entry entry : namespaces.values()) count += entry.count.sum();
+        return count;
+    }
+
+    /**
+     * Logs one line per reason and namespace, with the number of warnings and the sampled IRIs
+     */
+    public void report(Logger logger) {
+        if (!isEnabled(logger)) return;
+        for (Reason reason : Reason.values()) {
+            Map<String, Entry> namespaces = this.entries.get(reason);
+            if (namespaces == null) continue;
+            for (Map.Entry<String, Entry> namespace : new TreeMap<>(namespaces).entrySet()) {
+                Entry entry = namespace.getValue();
+                log(logger, "{} x {} in {}, e.g. {}", entry.count.sum(), reason.getDescription(), namespace.getKey(), entry.getSample());
+            }
+        }
+    }
+
+    private boolean isEnabled(Logger logger) {
+        switch (this.level) {
+            case ERROR: return logger.isErrorEnabled();
+            case WARN: return logger.isWarnEnabled();
+            case INFO: return logger.isInfoEnabled();
+            case DEBUG: return logger.isDebugEnabled();
+            default: return logger.isTraceEnabled();
+        }
+    }
+
+    private void log(Logger logger, String format, Object... arguments) {
+        switch (this.level) {
+            case ERROR: logger.error(format, arguments); break;
+            case WARN: logger.warn(format, arguments); break;
+            case INFO: logger.info(format, arguments); break;
+            case DEBUG: logger.debug(format, arguments); break;
+            default: logger.trace(format, arguments);
+        }
+    }
+
+    private static class Entry {
+        private final LongAdder count = new LongAdder();
+        private final List<IRI> sample = new ArrayList<>();
+        private volatile boolean full;
+
+        private void add(IRI iri, int sampleSize) {
+            this.count.increment();
+            if (this.full) return;
+            synchronized (this.sample) {
+                if (this.sample.size() < sampleSize) this.sample.add(iri);
+                this.full = this.sample.size() >= sampleSize;
+            }
+        }
+
+        private List<IRI> getSample() {
+            synchronized (this.sample) {
+                return new ArrayList<>(this.sample);
+            }
+        }
+    }
+}
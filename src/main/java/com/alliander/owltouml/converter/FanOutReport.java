@@ -0,0 +1,76 @@
+package com.alliander.owltouml.converter;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The object properties of a conversion whose associations were collapsed by the association strategy
+ */
+public class FanOutReport {
+
+    private static final int LARGEST = 10;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    void record(IRI property, int domain, int range, int associations) {
+        this.entries.add(new Entry(property, domain, range, associations));
+    }
+
+    void clear() {
+        this.entries.clear();
+    }
+
+    public int getCollapsedProperties() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the number of associations the cross product of the collapsed properties would have created
+     */
+    public long getCrossProductAssociations() {
+        long count = 0;
+        for (Entry entry : this.entries) count += (long) entry.domain * entry.range;
+        return count;
+    }
+
+    /**
+     * @return the number of associations created for the collapsed properties
+     */
+    public long getAssociations() {
+        long count = 0;
+        for (Entry entry : this.entries) count += entry.associations;
+        return count;
+    }
+
+    /**
+     * Logs the totals and the properties with the largest cross products
+     */
+    public void report(Logger logger, AssociationStrategy strategy) {
+        if (this.entries.isEmpty() || !logger.isInfoEnabled()) return;
+        logger.info("{} collapsed {} object properties to {} associations instead of {}", strategy, getCollapsedProperties(),
+                getAssociations(), getCrossProductAssociations());
+        List<Entry> largest = new ArrayList<>(this.entries);
+        largest.sort(Comparator.comparingLong((Entry entry) -> (long) entry.domain * entry.range).reversed());
+        for (Entry entry : largest.subList(0, Math.min(LARGEST, largest.size()))) {
+            logger.info("  {}: {} x {} classes, {} associations", entry.property, entry.domain, entry.range, entry.associations);
+        }
+    }
+
+    private static class Entry {
+        private final IRI property;
+        private final int domain;
+        private final int range;
+        private final int associations;
+
+        private Entry(IRI property, int domain, int range, int associations) {
+            this.property = property;
+            this.domain = domain;
+            this.range = range;
+            this.associations = associations;
+        }
+    }
+}
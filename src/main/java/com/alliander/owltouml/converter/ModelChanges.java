@@ -0,0 +1,33 @@
+package com.alliander.owltouml.converter;
+
+import org.eclipse.uml2.uml.Element;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The elements an incremental conversion added to, updated in and removed from the model. Removed elements are no
+ * longer part of the model, but keep their identity so an exporter can look up what it wrote for them before.
+ */
+public class ModelChanges {
+
+    final List<Element> added = new ArrayList<>();
+    final List<Element> updated = new ArrayList<>();
+    final List<Element> removed = new ArrayList<>();
+
+    public List<Element> getAdded() {
+        return this.added;
+    }
+
+    public List<Element> getUpdated() {
+        return this.updated;
+    }
+
+    public List<Element> getRemoved() {
+        return this.removed;
+    }
+
+    public boolean isEmpty() {
+        return this.added.isEmpty() && this.updated.isEmpty() && this.removed.isEmpty();
+    }
+}
@@ -0,0 +1,279 @@
+package com.alliander.owltouml.converter;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Index of the axioms used by the converter, built in a single pass over the ontology
+ */
+class OntologyIndex {
+
+    private final List<IRI> classes = new ArrayList<>();
+    private final List<IRI> dataProperties = new ArrayList<>();
+    private final List<IRI> objectProperties = new ArrayList<>();
+    private final Map<IRI, List<IRI>> dataDomains = new HashMap<>();
+    private final Map<IRI, Datatype> dataRanges = new HashMap<>();
+    private final Map<IRI, List<IRI>> objectDomains = new HashMap<>();
+    private final Map<IRI, List<IRI>> objectRanges = new HashMap<>();
+    private final Map<IRI, List<IRI>> superClasses = new HashMap<>();
+    private final Set<IRI> subClasses = new HashSet<>();
+    private final Map<IRI, List<Annotation>> annotations = new HashMap<>();
+
+    static OntologyIndex build(OWLOntology ontology) {
+        OntologyIndex index = new OntologyIndex();
+        ontology.classesInSignature().forEach(cls -> index.classes.add(cls.getIRI()));
+        ontology.dataPropertiesInSignature().forEach(dp -> index.dataProperties.add(dp.getIRI()));
+        ontology.objectPropertiesInSignature().forEach(op -> index.objectProperties.add(op.getIRI()));
+        ontology.axioms(AxiomType.SUBCLASS_OF).forEach(ax -> index.add(ax, null));
+        ontology.axioms(AxiomType.DATA_PROPERTY_DOMAIN).forEach(ax -> index.add(ax, null));
+        ontology.axioms(AxiomType.DATA_PROPERTY_RANGE).forEach(ax -> index.add(ax, null));
+        ontology.axioms(AxiomType.OBJECT_PROPERTY_DOMAIN).forEach(ax -> index.add(ax, null));
+        ontology.axioms(AxiomType.OBJECT_PROPERTY_RANGE).forEach(ax -> index.add(ax, null));
+        ontology.axioms(AxiomType.ANNOTATION_ASSERTION).forEach(ax -> index.add(ax, null));
+        return index;
+    }
+
+    /**
+     * Re-indexes the given entities from the current axioms of the ontology, the rest of the index is kept
+     */
+    void update(OWLOntology ontology, Set<IRI> iris) {
+        for (IRI iri : iris) {
+            updateSignature(this.classes, iri, ontology.containsClassInSignature(iri));
+            updateSignature(this.dataProperties, iri, ontology.containsDataPropertyInSignature(iri));
+            updateSignature(this.objectProperties, iri, ontology.containsObjectPropertyInSignature(iri));
+            this.dataDomains.remove(iri);
+            this.dataRanges.remove(iri);
+            this.objectDomains.remove(iri);
+            this.objectRanges.remove(iri);
+            this.superClasses.remove(iri);
+            this.subClasses.remove(iri);
+            this.annotations.remove(iri);
+        }
+        for (IRI iri : iris) {
+            Set<OWLAxiom> axioms = new HashSet<>();
+            ontology.entitiesInSignature(iri).forEach(entity -> ontology.referencingAxioms(entity).forEach(axioms::add));
+            ontology.annotationAssertionAxioms(iri).forEach(axioms::add);
+            for (OWLAxiom axiom : axioms) add(axiom, iri);
+        }
+    }
+
+    private static void updateSignature(List<IRI> signature, IRI iri, boolean contains) {
+        if (!contains) {
+            signature.remove(iri);
+        } else if (!signature.contains(iri)) {
+            signature.add(iri);
+        }
+    }
+
+    /**
+     * Indexes an axiom, only the entries of the given key or of any key if it is null
+     */
+    private void add(OWLAxiom axiom, IRI key) {
+        if (axiom instanceof OWLSubClassOfAxiom) {
+            OWLSubClassOfAxiom ax = (OWLSubClassOfAxiom) axiom;
+            if (ax.getSubClass().isOWLClass() && matches(ax.getSubClass().asOWLClass().getIRI(), key)) {
+                IRI subClass = ax.getSubClass().asOWLClass().getIRI();
+                this.subClasses.add(subClass);
+                if (ax.getSuperClass().isOWLClass())
+                    add(this.superClasses, subClass, ax.getSuperClass().asOWLClass().getIRI());
+            }
+        } else if (axiom instanceof OWLDataPropertyDomainAxiom) {
+            OWLDataPropertyDomainAxiom ax = (OWLDataPropertyDomainAxiom) axiom;
+            if (ax.getProperty().isOWLDataProperty() && matches(ax.getProperty().asOWLDataProperty().getIRI(), key)) {
+                IRI property = ax.getProperty().asOWLDataProperty().getIRI();
+                ax.classesInSignature().forEach(cls -> add(this.dataDomains, property, cls.getIRI()));
+            }
+        } else if (axiom instanceof OWLDataPropertyRangeAxiom) {
+            OWLDataPropertyRangeAxiom ax = (OWLDataPropertyRangeAxiom) axiom;
+            if (ax.getProperty().isOWLDataProperty() && matches(ax.getProperty().asOWLDataProperty().getIRI(), key)) {
+                OWLDataRange range = ax.getRange();
+                this.dataRanges.put(ax.getProperty().asOWLDataProperty().getIRI(),
+                        new Datatype(range.isOWLDatatype() ? range.asOWLDatatype().getIRI() : null, range.toString()));
+            }
+        } else if (axiom instanceof OWLObjectPropertyDomainAxiom) {
+            OWLObjectPropertyDomainAxiom ax = (OWLObjectPropertyDomainAxiom) axiom;
+            if (ax.getProperty().isNamed() && matches(ax.getProperty().asOWLObjectProperty().getIRI(), key)) {
+                IRI property = ax.getProperty().asOWLObjectProperty().getIRI();
+                ax.classesInSignature().forEach(cls -> add(this.objectDomains, property, cls.getIRI()));
+            }
+        } else if (axiom instanceof OWLObjectPropertyRangeAxiom) {
+            OWLObjectPropertyRangeAxiom ax = (OWLObjectPropertyRangeAxiom) axiom;
+            if (ax.getProperty().isNamed() && matches(ax.getProperty().asOWLObjectProperty().getIRI(), key)) {
+                IRI property = ax.getProperty().asOWLObjectProperty().getIRI();
+                ax.classesInSignature().forEach(cls -> add(this.objectRanges, property, cls.getIRI()));
+            }
+        } else if (axiom instanceof OWLAnnotationAssertionAxiom) {
+            OWLAnnotationAssertionAxiom ax = (OWLAnnotationAssertionAxiom) axiom;
+            if (ax.getSubject() instanceof IRI && matches((IRI) ax.getSubject(), key)) {
+                OWLAnnotationValue value = ax.getValue();
+                String language = value instanceof OWLLiteral ? ((OWLLiteral) value).getLang() : "";
+                add(this.annotations, (IRI) ax.getSubject(),
+                        new Annotation(ax.getProperty().getIRI(), language, ax.getProperty() + " : " + ax.annotationValue()));
+            }
+        }
+    }
+
+    private static boolean matches(IRI iri, IRI key) {
+        return key == null || key.equals(iri);
+    }
+
+    /**
+     * Writes the index to a snapshot
+     */
+    void write(OntologySnapshot.Writer out) throws IOException {
+        out.writeIris(this.classes);
+        out.writeIris(this.dataProperties);
+        out.writeIris(this.objectProperties);
+        out.writeIriLists(this.dataDomains);
+        out.writeInt(this.dataRanges.size());
+        for (Map.Entry<IRI, Datatype> range : this.dataRanges.entrySet()) {
+            out.writeIri(range.getKey());
+            out.writeIri(range.getValue().iri);
+            out.writeString(range.getValue().name);
+        }
+        out.writeIriLists(this.objectDomains);
+        out.writeIriLists(this.objectRanges);
+        out.writeIriLists(this.superClasses);
+        out.writeIris(this.subClasses);
+        out.writeInt(this.annotations.size());
+        for (Map.Entry<IRI, List<Annotation>> entry : this.annotations.entrySet()) {
+            out.writeIri(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (Annotation annotation : entry.getValue()) {
+                out.writeIri(annotation.property);
+                out.writeString(annotation.language);
+                out.writeString(annotation.text);
+            }
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write}
+     */
+    static OntologyIndex read(OntologySnapshot.Reader in) {
+        OntologyIndex index = new OntologyIndex();
+        index.classes.addAll(in.readIris());
+        index.dataProperties.addAll(in.readIris());
+        index.objectProperties.addAll(in.readIris());
+        index.dataDomains.putAll(in.readIriLists());
+        int ranges = in.readInt();
+        for (int i = 0; i < ranges; i++) {
+            IRI property = in.readIri();
+            index.dataRanges.put(property, new Datatype(in.readIri(), in.readString()));
+        }
+        index.objectDomains.putAll(in.readIriLists());
+        index.objectRanges.putAll(in.readIriLists());
+        index.superClasses.putAll(in.readIriLists());
+        index.subClasses.addAll(in.readIris());
+        int annotated = in.readInt();
+        for (int i = 0; i < annotated; i++) {
+            IRI iri = in.readIri();
+            int count = in.readInt();
+            List<Annotation> annotations = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) annotations.add(new Annotation(in.readIri(), in.readString(), in.readString()));
+            index.annotations.put(iri, annotations);
+        }
+        return index;
+    }
+
+    private static <T> void add(Map<IRI, List<T>> map, IRI key, T value) {
+        map.computeIfAbsent(key, k -> new ArrayList<>(2)).add(value);
+    }
+
+    List<IRI> getClasses() {
+        return this.classes;
+    }
+
+    List<IRI> getDataProperties() {
+        return this.dataProperties;
+    }
+
+    List<IRI> getObjectProperties() {
+        return this.objectProperties;
+    }
+
+    /**
+     * @return the classes in the signature of the domain axioms of a data property
+     */
+    List<IRI> getDataDomains(IRI property) {
+        return this.dataDomains.getOrDefault(property, Collections.emptyList());
+    }
+
+    /**
+     * @return the last declared range of a data property, xsd:string if there is none
+     */
+    Datatype getDataRange(IRI property) {
+        return this.dataRanges.getOrDefault(property, Datatype.XSD_STRING);
+    }
+
+    List<IRI> getObjectDomains(IRI property) {
+        return this.objectDomains.getOrDefault(property, Collections.emptyList());
+    }
+
+    List<IRI> getObjectRanges(IRI property) {
+        return this.objectRanges.getOrDefault(property, Collections.emptyList());
+    }
+
+    /**
+     * @return the named superclasses of a class
+     */
+    List<IRI> getSuperClasses(IRI cls) {
+        return this.superClasses.getOrDefault(cls, Collections.emptyList());
+    }
+
+    /**
+     * @return whether the class is the subclass in any subclass axiom, named or not
+     */
+    boolean hasSubClassAxioms(IRI cls) {
+        return this.subClasses.contains(cls);
+    }
+
+    List<Annotation> getAnnotations(IRI iri) {
+        return this.annotations.getOrDefault(iri, Collections.emptyList());
+    }
+
+    /**
+     * Annotation assertion on an entity, with the language of a literal value, empty if it has none
+     */
+    static class Annotation {
+        final IRI property;
+        final String language;
+        final String text;
+
+        Annotation(IRI property, String language, String text) {
+            this.property = property;
+            this.language = language;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Range of a data property, identified by its IRI, or by its name for data ranges that are not a datatype
+     */
+    static class Datatype {
+        static final Datatype XSD_STRING = new Datatype(OWL2Datatype.XSD_STRING.getIRI(), "xsd:string");
+
+        final IRI iri;
+        final String name;
+
+        Datatype(IRI iri, String name) {
+            this.iri = iri;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Datatype)) return false;
+            Datatype other = (Datatype) o;
+            return this.iri != null ? this.iri.equals(other.iri) : other.iri == null && this.name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.iri != null ? this.iri.hashCode() : this.name.hashCode();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.alliander.owltouml.converter;
+
+import org.semanticweb.owlapi.model.IRI;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Binary snapshot of the prefixes and the axiom index of a loaded ontology, so later runs can skip parsing.
+ * A snapshot is only used when the hash of the source document still matches the hash it was written for.
+ * Strings are written once and referenced by number afterwards, the file is read through a memory mapping.
+ */
+class OntologySnapshot {
+
+    private static final int MAGIC = 0x4F57554D;
+    private static final int VERSION = 2;
+
+    final Map<String, String> prefixes;
+    final OntologyIndex index;
+
+    OntologySnapshot(Map<String, String> prefixes, OntologyIndex index) {
+        this.prefixes = prefixes;
+        this.index = index;
+    }
+
+    /**
+     * @return the snapshot file of an ontology in the given directory
+     */
+    static Path file(Path directory, IRI iri) {
+        return directory.resolve(hash(iri.toString().getBytes(StandardCharsets.UTF_8)) + ".snapshot");
+    }
+
+    /**
+     * @return the SHA-256 hash of a source document
+     */
+    static String hash(Path document) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(document)) {
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) != -1) digest.update(buffer, 0, read);
+        }
+        return toHex(digest.digest());
+    }
+
+    void write(Path file, String sourceHash) throws IOException {
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "snapshot", ".part");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            Writer writer = new Writer(out);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writer.writeString(sourceHash);
+            out.writeInt(this.prefixes.size());
+            for (Map.Entry<String, String> prefix : this.prefixes.entrySet()) {
+                writer.writeString(prefix.getKey());
+                writer.writeString(prefix.getValue());
+            }
+            this.index.write(writer);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return the snapshot in the file, or null if there is none or it was written for another source
+     * @throws IOException if the file cannot be read or is truncated or corrupt
+     */
+    static OntologySnapshot read(Path file, String sourceHash) throws IOException {
+        if (!Files.exists(file)) return null;
+        try {
+            return readMapped(file, sourceHash);
+        } catch (RuntimeException e) {
+            // reading past the end of the buffer or referring to a string that was never written
+            throw new IOException("Corrupt snapshot " + file, e);
+        }
+    }
+
+    private static OntologySnapshot readMapped(Path file, String sourceHash) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Reader reader = new Reader(buffer);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !sourceHash.equals(reader.readString()))
+                return null;
+            int count = buffer.getInt();
+            Map<String, String> prefixes = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                prefixes.put(reader.readString(), reader.readString());
+            }
+            return new OntologySnapshot(prefixes, OntologyIndex.read(reader));
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hash(byte[] bytes) {
+        return toHex(sha256().digest(bytes));
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Writes strings and IRIs, each distinct value is written in full only the first time
+     */
+    static class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> written = new HashMap<>();
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeInt(int value) throws IOException {
+            this.out.writeInt(value);
+        }
+
+        void writeString(String value) throws IOException {
+            writeValue(value);
+        }
+
+        /**
+         * Writes an IRI, or null
+         */
+        void writeIri(IRI iri) throws IOException {
+            if (iri == null) {
+                this.out.writeInt(-2);
+            } else {
+                writeValue(iri);
+            }
+        }
+
+        void writeIris(Collection<IRI> iris) throws IOException {
+            this.out.writeInt(iris.size());
+            for (IRI iri : iris) writeIri(iri);
+        }
+
+        void writeIriLists(Map<IRI, List<IRI>> map) throws IOException {
+            this.out.writeInt(map.size());
+            for (Map.Entry<IRI, List<IRI>> entry : map.entrySet()) {
+                writeIri(entry.getKey());
+                writeIris(entry.getValue());
+            }
+        }
+
+        private void writeValue(Object value) throws IOException {
+            String string = value.toString();
+            Integer reference = this.written.get(string);
+            if (reference != null) {
+                this.out.writeInt(reference);
+                return;
+            }
+            this.written.put(string, this.written.size());
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            this.out.writeInt(-1);
+            this.out.writeInt(bytes.length);
+            this.out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads the values written by a {@link Writer}
+     */
+    static class Reader {
+        private final ByteBuffer buffer;
+        private final List<String> strings = new ArrayList<>();
+        private final Map<Integer, IRI> iris = new HashMap<>();
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int readInt() {
+            return this.buffer.getInt();
+        }
+
+        String readString() {
+            return this.strings.get(readReference());
+        }
+
+        IRI readIri() {
+            int position = this.buffer.position();
+            if (this.buffer.getInt() == -2) return null;
+            this.buffer.position(position);
+            int reference = readReference();
+            return this.iris.computeIfAbsent(reference, r -> IRI.create(this.strings.get(r)));
+        }
+
+        List<IRI> readIris() {
+            int count = readInt();
+            List<IRI> iris = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) iris.add(readIri());
+            return iris;
+        }
+
+        Map<IRI, List<IRI>> readIriLists() {
+            int count = readInt();
+            Map<IRI, List<IRI>> map = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) map.put(readIri(), readIris());
+            return map;
+        }
+
+        private int readReference() {
+            int reference = this.buffer.getInt();
+            if (reference != -1) return reference;
+            byte[] bytes = new byte[this.buffer.getInt()];
+            this.buffer.get(bytes);
+            this.strings.add(new String(bytes, StandardCharsets.UTF_8));
+            return this.strings.size() - 1;
+        }
+    }
+}
@@ -1,73 +1,526 @@
 package com.alliander.owltouml.converter;
 
+import com.alliander.owltouml.loader.ParallelImportLoader;
+import com.alliander.owltouml.metrics.ConversionMetrics;
+import com.alliander.owltouml.metrics.StageMetrics;
 import org.eclipse.uml2.uml.*;
 import org.eclipse.uml2.uml.Class;
 import org.eclipse.uml2.uml.Package;
 import org.eclipse.uml2.uml.PrimitiveType;
 import org.semanticweb.owlapi.apibinding.OWLManager;
-import org.semanticweb.owlapi.formats.PrefixDocumentFormat;
 import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.sql.SQLOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Converter from OWL (OWL-API compatible) to UML (Eclipse UML2)
  */
 public class OwlToUmlConverter {
 
+    private static final Logger LOG = LoggerFactory.getLogger(OwlToUmlConverter.class);
+    private static final IRI OWL_THING = OWLRDFVocabulary.OWL_THING.getIRI();
+
     private OWLOntologyManager manager;
     private OWLOntology ontology;
-    private PrefixDocumentFormat prefixManager;
+    private Map<String, String> prefixMap;
+    private Path snapshotDirectory;
+    private int importThreads = 1;
+    private long importTimeout = 300;
     private Model umlModel;
     private UMLFactory umlFactory;
     private String prefix;
+    private String iri;
     private HashMap<String, Package> packages;
     private Package rootPackage;
+    private Package datatypePackage;
+    private HashMap<OntologyIndex.Datatype, PrimitiveType> datatypes;
+    private OntologyIndex index;
+    private PrefixCache prefixes;
     private HashMap<IRI, Class> classes;
+    private Set<IRI> convertedClasses;
+    private HashMap<IRI, List<IRI>> unionMemberships;
+    private IdentityHashMap<Element, IRI> sourceIris;
+    private HashMap<IRI, List<Element>> elements;
+    private ModelChanges changes;
     private boolean verbose;
+    private int parallelism = 1;
+    private ForkJoinPool pool;
+    private ConversionMetrics metrics = new ConversionMetrics("conversion");
+    private StageMetrics stage = StageMetrics.detached();
+    private final Diagnostics diagnostics = new Diagnostics();
+    private AssociationStrategy associationStrategy = AssociationStrategy.CROSS_PRODUCT;
+    private int associationThreshold = 1;
+    private final FanOutReport fanOut = new FanOutReport();
+    private AnnotationFilter annotationFilter = new AnnotationFilter();
+    private boolean annotationComments = true;
+    private HashMap<IRI, String> comments;
 
     public OwlToUmlConverter() {
-        this.manager = OWLManager.createOWLOntologyManager();
+        this(configure(OWLManager.createOWLOntologyManager()));
+    }
+
+    /**
+     * Creates a converter that loads its ontology through the given manager, which can be shared by converters that
+     * run in parallel so imports they have in common are only parsed once
+     */
+    public OwlToUmlConverter(OWLOntologyManager manager) {
+        this.manager = manager;
+        this.umlFactory = UMLFactory.eINSTANCE;
+    }
+
+    /**
+     * @return a thread-safe manager, configured like the manager of a single converter
+     */
+    public static OWLOntologyManager createSharedManager() {
+        return configure(OWLManager.createConcurrentOWLOntologyManager());
+    }
+
+    private static OWLOntologyManager configure(OWLOntologyManager manager) {
         OWLOntologyLoaderConfiguration config = new OWLOntologyLoaderConfiguration();
         config = config.setMissingImportHandlingStrategy(MissingImportHandlingStrategy.SILENT);
-        this.manager.setOntologyLoaderConfiguration(config);
-        this.umlFactory = UMLFactory.eINSTANCE;
+        manager.setOntologyLoaderConfiguration(config);
+        return manager;
+    }
+
+    /**
+     * Adds a mapper that resolves ontology and import IRIs to documents, e.g. a local ontology store
+     */
+    public void addIRIMapper(OWLOntologyIRIMapper mapper) {
+        this.manager.getIRIMappers().add(mapper);
+    }
+
+    /**
+     * Keep binary snapshots of loaded ontologies in the given directory. A snapshot replaces parsing on later runs
+     * as long as the source document of the ontology is a local file with unchanged content.
+     */
+    public void setSnapshotDirectory(Path snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * Sets the number of documents of the import closure that are parsed at the same time. With more than one thread
+     * the imports are discovered and parsed by a {@link ParallelImportLoader}, defaults to 1.
+     */
+    public void setImportThreads(int importThreads) {
+        this.importThreads = importThreads;
+    }
+
+    /**
+     * Sets the number of seconds a single document may take to parse when the imports are loaded in parallel, an
+     * import that takes longer is left out, defaults to 300
+     */
+    public void setImportTimeout(long importTimeout) {
+        this.importTimeout = importTimeout;
+    }
+
+    /**
+     * Sets the metrics the load and the conversion phases are recorded in
+     */
+    public void setMetrics(ConversionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ConversionMetrics getMetrics() {
+        return this.metrics;
     }
 
     public void loadOntology(String iri, String prefix) throws OWLOntologyCreationException {
-        this.ontology = this.manager.loadOntology(IRI.create(iri));
-        this.prefixManager = this.ontology.getFormat().asPrefixOWLDocumentFormat();
-        this.packages = new HashMap<>();
-        this.classes = new HashMap<>();
+        StageMetrics load = this.metrics.start("loadOntology");
+        IRI ontologyIri = IRI.create(iri);
+        Path snapshotFile = null;
+        String sourceHash = null;
+        OntologySnapshot snapshot = null;
+        if (this.snapshotDirectory != null) {
+            try {
+                Path source = getLocalDocument(ontologyIri);
+                if (source != null) {
+                    snapshotFile = OntologySnapshot.file(this.snapshotDirectory, ontologyIri);
+                    sourceHash = OntologySnapshot.hash(source);
+                    snapshot = OntologySnapshot.read(snapshotFile, sourceHash);
+                }
+            } catch (IOException e) {
+                LOG.warn("Could not read snapshot of {}: {}", iri, e.getMessage());
+            }
+        }
+        if (snapshot != null) {
+            LOG.info("Loaded snapshot of {}", iri);
+            this.ontology = null;
+            this.prefixMap = snapshot.prefixes;
+            this.index = snapshot.index;
+        } else {
+            this.ontology = loadOrReuse(ontologyIri);
+            this.prefixMap = new LinkedHashMap<>(this.ontology.getFormat().asPrefixOWLDocumentFormat().getPrefixName2PrefixMap());
+            this.index = OntologyIndex.build(this.ontology);
+            if (sourceHash != null) {
+                try {
+                    Files.createDirectories(this.snapshotDirectory);
+                    new OntologySnapshot(this.prefixMap, this.index).write(snapshotFile, sourceHash);
+                } catch (IOException e) {
+                    LOG.warn("Could not write snapshot of {}: {}", iri, e.getMessage());
+                }
+            }
+        }
+        this.iri = iri;
         this.prefix = prefix;
+        load.created(this.index.getClasses().size() + this.index.getDataProperties().size() + this.index.getObjectProperties().size());
+        load.stop();
+    }
+
+    /**
+     * @return the ontology, reused when it is already in the manager, e.g. as import of an ontology loaded before
+     */
+    private OWLOntology loadOrReuse(IRI iri) throws OWLOntologyCreationException {
+        OWLOntology loaded = this.manager.getOntology(iri);
+        if (loaded != null) return loaded;
+        if (this.importThreads > 1) {
+            ParallelImportLoader loader = new ParallelImportLoader(this.manager, this.importThreads);
+            loader.setTimeout(this.importTimeout, TimeUnit.SECONDS);
+            loader.setMetrics(this.metrics);
+            return loader.load(iri);
+        }
+        try {
+            return this.manager.loadOntology(iri);
+        } catch (OWLOntologyAlreadyExistsException e) {
+            // loaded by another converter sharing the manager in the meantime
+            return this.manager.getOntology(e.getOntologyID());
+        }
+    }
+
+    /**
+     * Loads the ontology again from its source, e.g. after its prefixes changed, the model has to be converted again
+     */
+    public void reloadOntology() throws OWLOntologyCreationException {
+        if (this.ontology != null) this.manager.removeOntology(this.ontology);
+        loadOntology(this.iri, this.prefix);
+    }
+
+    /**
+     * @return the parsed ontology, or null if it was loaded from a snapshot
+     */
+    public OWLOntology getOntology() {
+        return this.ontology;
+    }
+
+    public OWLOntologyManager getManager() {
+        return this.manager;
+    }
+
+    /**
+     * @return the local file the loaded ontology was read from, or null if it is not a local file
+     */
+    public Path getSourceDocument() {
+        return getLocalDocument(IRI.create(this.iri));
+    }
+
+    /**
+     * @return whether a version of the ontology declares the same prefixes as the loaded ontology
+     */
+    public boolean hasSamePrefixes(OWLOntology version) {
+        return this.prefixMap.equals(new LinkedHashMap<>(version.getFormat().asPrefixOWLDocumentFormat().getPrefixName2PrefixMap()));
+    }
+
+    /**
+     * @return the local file the ontology is loaded from, or null if it is not a local file
+     */
+    private Path getLocalDocument(IRI iri) {
+        IRI document = iri;
+        for (OWLOntologyIRIMapper mapper : this.manager.getIRIMappers()) {
+            IRI mapped = mapper.getDocumentIRI(iri);
+            if (mapped != null) {
+                document = mapped;
+                break;
+            }
+        }
+        if (!document.toString().startsWith("file:")) return null;
+        Path file = Paths.get(document.toURI());
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * Sets the number of threads used to analyse the ontology, the UML model itself is always built by one thread
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets how the associations of object properties with more domain and range pairs than the threshold are created
+     */
+    public void setAssociationStrategy(AssociationStrategy associationStrategy) {
+        this.associationStrategy = associationStrategy;
+    }
+
+    /**
+     * Sets the largest number of domain and range pairs of an object property that is converted to the cross
+     * product, whatever the strategy, defaults to 1
+     */
+    public void setAssociationThreshold(int associationThreshold) {
+        this.associationThreshold = associationThreshold;
+    }
+
+    /**
+     * Sets the annotations that are converted, by default all of them
+     */
+    public void setAnnotationFilter(AnnotationFilter annotationFilter) {
+        this.annotationFilter = annotationFilter;
+    }
+
+    /**
+     * Whether every element created from an entity owns a comment with its annotations, defaults to true. The text
+     * is rendered once per entity. Without comments the model is smaller and the annotations are only rendered when
+     * an exporter asks for them with {@link #getAnnotations(Element)}.
+     */
+    public void setAnnotationComments(boolean annotationComments) {
+        this.annotationComments = annotationComments;
     }
 
     public Model convertToUml() {
         System.out.println("Converting ontology.");
-        this.umlModel = this.umlFactory.createModel();
-        this.rootPackage = this.umlModel.createNestedPackage(this.prefix + "-ontology");
-        this.processPrefixes();
-        this.processClasses();
-        this.processDataProperties();
-        this.processObjectProperties();
-        this.processSubClassOf();
+        this.startConversion();
+        try {
+            this.measure("processPrefixes", this::processPrefixes);
+            this.measure("processClasses", this::processClasses);
+            this.measure("processDataProperties", this::processDataProperties);
+            this.measure("processObjectProperties", this::processObjectProperties);
+            this.measure("processSubClassOf", this::processSubClassOf);
+        } finally {
+            this.stage = StageMetrics.detached();
+            this.finishConversion();
+        }
+        this.diagnostics.report(LOG);
+        this.fanOut.report(LOG, this.associationStrategy);
         System.out.println("Finished converting.");
         return this.umlModel;
     }
 
+    /**
+     * Converts the ontology without building a UML model, the packages, classes, attributes, associations and
+     * generalizations are passed to the sink as soon as they are analysed. The sink gets the same entities in the
+     * same phases as the model of {@link #convertToUml()}, but the model cannot be updated incrementally afterwards.
+     */
+    public void convert(ConversionSink sink) {
+        System.out.println("Converting ontology.");
+        this.startAnalysis();
+        this.umlModel = null;
+        this.convertedClasses = new HashSet<>();
+        Set<String> packageNames = new HashSet<>();
+        try {
+            sink.start(getRootPackageName());
+            this.measure("processPrefixes", () -> this.prefixMap.forEach((pre, namespaceIri) -> {
+                String identifier = getPackageName(pre);
+                if (packageNames.add(identifier)) {
+                    IRI namespace = IRI.create(namespaceIri);
+                    sink.addPackage(identifier, namespace, getAnnotations(namespace));
+                    this.stage.created();
+                } else {
+                    this.stage.skipped();
+                }
+            }));
+            this.measure("processClasses", () -> {
+                for (IRI iri : this.index.getClasses()) {
+                    if (isValidPrefixIri(iri)) {
+                        this.convertedClasses.add(iri);
+                        sink.addClass(iri, getPrefix(iri), getIdentifier(iri), getAnnotations(iri));
+                        this.stage.created();
+                    } else {
+                        this.stage.skipped();
+                    }
+                }
+                if (this.convertedClasses.add(OWL_THING)) {
+                    if (packageNames.add("owl")) sink.addPackage("owl", null, Collections.emptyList());
+                    sink.addClass(OWL_THING, "owl", "Thing", Collections.emptyList());
+                    this.stage.created();
+                }
+            });
+            this.measure("processDataProperties", () -> {
+                for (Plan plan : analyse(this.index.getDataProperties(), this::planDataProperty)) {
+                    if (plan.name == null) {
+                        this.stage.skipped();
+                        continue;
+                    }
+                    List<String> annotations = getAnnotations(plan.iri);
+                    for (IRI owner : plan.domain) {
+                        sink.addAttribute(plan.iri, owner, plan.name, plan.type.name, annotations);
+                        this.stage.created();
+                    }
+                }
+            });
+            this.measure("processObjectProperties", () -> {
+                for (Plan plan : analyse(this.index.getObjectProperties(), this::planObjectProperty)) {
+                    if (plan.name == null) {
+                        this.stage.skipped();
+                        continue;
+                    }
+                    List<List<IRI>> ends = getAssociationEnds(plan, sink);
+                    List<String> annotations = getAnnotations(plan.iri);
+                    for (IRI source : ends.get(0)) {
+                        for (IRI target : ends.get(1)) {
+                            sink.addAssociation(plan.iri, source, target, plan.name, annotations);
+                            this.stage.created();
+                        }
+                    }
+                }
+            });
+            this.measure("processSubClassOf", () -> {
+                for (Plan plan : analyse(this.index.getClasses(), this::planSubClassOf)) {
+                    if (plan == null) {
+                        this.stage.skipped();
+                        continue;
+                    }
+                    for (IRI general : plan.range) sink.addGeneralization(plan.iri, general);
+                    this.stage.created(plan.range.size());
+                }
+            });
+            sink.finish();
+        } finally {
+            this.stage = StageMetrics.detached();
+            this.finishConversion();
+        }
+        this.diagnostics.report(LOG);
+        this.fanOut.report(LOG, this.associationStrategy);
+        System.out.println("Finished converting.");
+    }
+
+    /**
+     * Creates an empty model and resets the state of a previous conversion. The phases are package-private so the
+     * benchmarks can run them one at a time.
+     */
+    void startConversion() {
+        this.startAnalysis();
+        this.umlModel = this.umlFactory.createModel();
+        this.rootPackage = this.umlModel.createNestedPackage(getRootPackageName());
+        this.packages = new HashMap<>();
+        this.classes = new HashMap<>();
+        this.convertedClasses = this.classes.keySet();
+        this.sourceIris = new IdentityHashMap<>();
+        this.elements = new HashMap<>();
+        this.comments = new HashMap<>();
+        this.datatypePackage = null;
+        this.datatypes = new HashMap<>();
+    }
+
+    /**
+     * Resets the state shared by both ways of converting
+     */
+    private void startAnalysis() {
+        this.prefixes = new PrefixCache(this.prefixMap, this.prefix);
+        this.unionMemberships = new HashMap<>();
+        this.diagnostics.clear();
+        this.fanOut.clear();
+        if (this.parallelism > 1) this.pool = new ForkJoinPool(this.parallelism);
+    }
+
+    private String getRootPackageName() {
+        return this.prefix + "-ontology";
+    }
+
+    /**
+     * @return the name of the package of a declared prefix, the empty prefix gets the prefix of the ontology
+     */
+    private String getPackageName(String pre) {
+        String identifier = pre.replace(":", "");
+        return identifier.isEmpty() ? this.prefix : identifier;
+    }
+
+    private void measure(String name, Runnable phase) {
+        this.stage = this.metrics.start(name);
+        phase.run();
+        this.stage.stop();
+    }
+
+    void finishConversion() {
+        if (this.pool != null) this.pool.shutdown();
+        this.pool = null;
+    }
+
+    /**
+     * @return the prefix resolution cache of the last conversion, with its hit and miss counters
+     */
+    public PrefixCache getPrefixCache() {
+        return this.prefixes;
+    }
+
+    /**
+     * @return the warnings of the last conversion, by reason and namespace
+     */
+    public Diagnostics getDiagnostics() {
+        return this.diagnostics;
+    }
+
+    /**
+     * @return the object properties of the last conversion whose associations were collapsed
+     */
+    public FanOutReport getFanOutReport() {
+        return this.fanOut;
+    }
+
+    /**
+     * @return the annotations of an entity or namespace that pass the annotation filter, rendered on every call
+     */
+    public List<String> getAnnotations(IRI iri) {
+        List<OntologyIndex.Annotation> annotations = this.index.getAnnotations(iri);
+        if (annotations.isEmpty()) return Collections.emptyList();
+        List<String> texts = new ArrayList<>(annotations.size());
+        for (OntologyIndex.Annotation annotation : annotations) {
+            if (this.annotationFilter.accepts(annotation)) texts.add(this.annotationFilter.getText(annotation));
+        }
+        return texts;
+    }
+
+    /**
+     * @return the annotations of the entity a converted element was created from
+     */
+    public List<String> getAnnotations(Element element) {
+        IRI iri = this.sourceIris.get(element);
+        if (iri == null) return Collections.emptyList();
+        return getAnnotations(iri);
+    }
+
+    /**
+     * @return the IRI of the ontology entity or namespace each converted element was created from
+     */
+    public Map<Element, IRI> getSourceIris() {
+        return this.sourceIris;
+    }
+
     /**
      * Processes the prefixes, creates a package for each namespace
      */
-    private void processPrefixes() {
-        prefixManager.prefixNames().forEach(pre -> {
-            String identifier = pre.replace(":", "");
-            if (identifier.isEmpty()) identifier = this.prefix;
+    void processPrefixes() {
+        this.prefixMap.forEach((pre, namespaceIri) -> {
+            String identifier = getPackageName(pre);
             if (!this.packages.containsKey(identifier)) {
-                Package newPackage = this.packages.put(identifier, this.rootPackage.createNestedPackage(identifier));
-                setAnnotations(this.prefixManager.getIRI(identifier), newPackage);
+                Package newPackage = this.rootPackage.createNestedPackage(identifier);
+                this.packages.put(identifier, newPackage);
+                IRI namespace = IRI.create(namespaceIri);
+                this.sourceIris.put(newPackage, namespace);
+                setAnnotations(namespace, newPackage);
+                this.stage.created();
+            } else {
+                this.stage.skipped();
             }
         });
     }
@@ -75,163 +528,438 @@ public class OwlToUmlConverter {
     /**
      * Processes the classes
      */
-    private void processClasses() {
-        this.ontology.classesInSignature().forEach(cls -> {
-            if (isValidPrefixIri(cls.getIRI())) {
-                Class newCls = this.packages.get(getPrefix(cls.getIRI())).createOwnedClass(getIdentifier(cls.getIRI()), false);
-                this.classes.put(cls.getIRI(), newCls);
-                setAnnotations(cls.getIRI(), newCls);
-            }
-        });
-        if (!this.classes.containsKey(IRI.create("http://www.w3.org/2002/07/owl#Thing"))) {
+    void processClasses() {
+        for (IRI iri : this.index.getClasses()) {
+            createClass(iri);
+        }
+        if (!this.classes.containsKey(OWL_THING)) {
             Class thing = null;
             if (this.packages.containsKey("owl")) {
                 thing = this.packages.get("owl").createOwnedClass("Thing", false);
             } else {
-                Package newPackage = this.packages.put("owl", this.rootPackage.createNestedPackage("owl"));
+                Package newPackage = this.rootPackage.createNestedPackage("owl");
+                this.packages.put("owl", newPackage);
                 thing = newPackage.createOwnedClass("Thing", false);
             }
-            this.classes.put(IRI.create("http://www.w3.org/2002/07/owl#Thing"), thing);
+            this.classes.put(OWL_THING, thing);
+            created(thing, OWL_THING);
+        }
+    }
+
+    private void createClass(IRI iri) {
+        if (isValidPrefixIri(iri)) {
+            Class newCls = this.packages.get(getPrefix(iri)).createOwnedClass(getIdentifier(iri), false);
+            this.classes.put(iri, newCls);
+            created(newCls, iri);
+            setAnnotations(iri, newCls);
+        } else {
+            this.stage.skipped();
         }
     }
 
     /**
      * Processes data properties, turns them into UML attributes
      */
-    private void processDataProperties() {
-        this.ontology.dataPropertiesInSignature().forEach(dp -> {
-            // get the range
-            List<String> types = new ArrayList<>();
-            types.add("xsd:string");
-            this.ontology.dataPropertyRangeAxioms(dp).forEach(ax -> {
-                types.add(ax.getRange().toString());
-            });
-            PrimitiveType type = this.umlFactory.createPrimitiveType();
-            type.setName(types.get(types.size()-1));
-            List<Class> classes = new ArrayList<>();
-            this.ontology.dataPropertyDomainAxioms(dp).forEach(ax -> {
-                ax.classesInSignature().forEach(cls -> {
-                    if (iriIsTransformedToClass(cls.getIRI()))
-                        classes.add(this.classes.get(cls.getIRI()));
-                });
-            });
-            if (classes.size() == 0) classes.add(this.classes.get(IRI.create("http://www.w3.org/2002/07/owl#Thing")));
-            classes.forEach(cls -> {
-                if (isValidPrefixIri(dp.getIRI())) {
-                    Property attr = cls.createOwnedAttribute(getPrefixedIdentifier(dp.getIRI()), type, 0, 1);
-                    setAnnotations(dp.getIRI(), attr);
-                }
-            });
+    void processDataProperties() {
+        for (Plan plan : analyse(this.index.getDataProperties(), this::planDataProperty)) {
+            applyDataProperty(plan);
+        }
+    }
+
+    private Plan planDataProperty(IRI dp) {
+        return new Plan(dp, isValidPrefixIri(dp) ? getPrefixedIdentifier(dp) : null, this.index.getDataRange(dp),
+                getClasses(this.index.getDataDomains(dp)), null);
+    }
+
+    private void applyDataProperty(Plan plan) {
+        if (plan.name == null) {
+            this.stage.skipped();
+            return;
+        }
+        PrimitiveType type = getPrimitiveType(plan.type);
+        plan.domain.forEach(owner -> {
+            Property attr = this.classes.get(owner).createOwnedAttribute(plan.name, type, 0, 1);
+            created(attr, plan.iri);
+            setAnnotations(plan.iri, attr);
         });
     }
 
+    /**
+     * @return the canonical primitive type of a datatype, created in the datatypes package on first use
+     */
+    private PrimitiveType getPrimitiveType(OntologyIndex.Datatype datatype) {
+        PrimitiveType type = this.datatypes.get(datatype);
+        if (type == null) {
+            if (this.datatypePackage == null) this.datatypePackage = this.umlModel.createNestedPackage("datatypes");
+            type = this.datatypePackage.createOwnedPrimitiveType(datatype.name);
+            this.datatypes.put(datatype, type);
+            if (datatype.iri != null) this.sourceIris.put(type, datatype.iri);
+        }
+        return type;
+    }
+
     /**
      * Processes object properties, turns them into uni-directional UML associations
      */
-    private void processObjectProperties() {
-        this.ontology.objectPropertiesInSignature().forEach(op -> {
-            // get classes in range
-            List<Class> classesInRange = new ArrayList<>();
-            this.ontology.objectPropertyRangeAxioms(op).forEach(ax -> {
-                ax.classesInSignature().forEach(cls -> {
-                    if (iriIsTransformedToClass(cls.getIRI()))
-                        classesInRange.add(this.classes.get(cls.getIRI()));
-                });
-            });
-            // get classes in domain
-            if (classesInRange.size() == 0) classesInRange.add(this.classes.get(IRI.create("http://www.w3.org/2002/07/owl#Thing")));
-            List<Class> classesInDomain = new ArrayList<>();
-            this.ontology.objectPropertyDomainAxioms(op).forEach(ax -> {
-                ax.classesInSignature().forEach(cls -> {
-                    if (iriIsTransformedToClass(cls.getIRI()))
-                        classesInDomain.add(this.classes.get(cls.getIRI()));
-                });
-            });
-            if (classesInDomain.size() == 0) classesInDomain.add(this.classes.get(IRI.create("http://www.w3.org/2002/07/owl#Thing")));
-            classesInDomain.forEach(domainCls -> {
-                classesInRange.forEach(rangeCls -> {
-                    if (isValidPrefixIri(op.getIRI())) {
-                        Association assoc = domainCls.createAssociation(true, AggregationKind.NONE_LITERAL, getPrefixedIdentifier(op.getIRI()), 0, 1, rangeCls, false, AggregationKind.NONE_LITERAL, "", 0, -1);
-                        setAnnotations(op.getIRI(), assoc);
-                    }
-                });
-            });
-        });
+    void processObjectProperties() {
+        for (Plan plan : analyse(this.index.getObjectProperties(), this::planObjectProperty)) {
+            applyObjectProperty(plan);
+        }
+    }
+
+    private Plan planObjectProperty(IRI op) {
+        List<IRI> classesInRange = getClasses(this.index.getObjectRanges(op));
+        List<IRI> classesInDomain = getClasses(this.index.getObjectDomains(op));
+        return new Plan(op, isValidPrefixIri(op) ? getPrefixedIdentifier(op) : null, null, classesInDomain, classesInRange);
+    }
+
+    private void applyObjectProperty(Plan plan) {
+        if (plan.name == null) {
+            this.stage.skipped();
+            return;
+        }
+        List<List<IRI>> ends = getAssociationEnds(plan, null);
+        for (IRI source : ends.get(0)) {
+            for (IRI target : ends.get(1)) {
+                Association assoc = this.classes.get(source).createAssociation(true, AggregationKind.NONE_LITERAL, plan.name, 0, 1, this.classes.get(target), false, AggregationKind.NONE_LITERAL, "", 0, -1);
+                created(assoc, plan.iri);
+                setAnnotations(plan.iri, assoc);
+            }
+        }
+    }
+
+    /**
+     * @return whether the associations of a property are collapsed by the association strategy
+     */
+    private boolean isCollapsed(Plan plan) {
+        return this.associationStrategy != AssociationStrategy.CROSS_PRODUCT
+                && (long) plan.domain.size() * plan.range.size() > this.associationThreshold;
+    }
+
+    /**
+     * @return the classes in the domain and in the range the associations of a property are created between, with
+     * the union classes of the domain and range when they are collapsed to a union. Collapsed properties are
+     * recorded in the fan-out report.
+     */
+    private List<List<IRI>> getAssociationEnds(Plan plan, ConversionSink sink) {
+        if (!isCollapsed(plan)) return Arrays.asList(plan.domain, plan.range);
+        List<List<IRI>> ends = Arrays.asList(plan.domain, plan.range);
+        if (this.associationStrategy == AssociationStrategy.UNION_CLASS) {
+            ends = Arrays.asList(Collections.singletonList(getUnion(plan.domain, plan.iri, sink)),
+                    Collections.singletonList(getUnion(plan.range, plan.iri, sink)));
+        }
+        this.fanOut.record(plan.iri, plan.domain.size(), plan.range.size(), ends.get(0).size() * ends.get(1).size());
+        return ends;
+    }
+
+    /**
+     * @return the generated abstract class for the union of the given classes, created in the package of the
+     * property on first use and shared by all properties with the same union. The classes become its subclasses
+     * when the subClassOf axioms are processed.
+     */
+    private IRI getUnion(List<IRI> members, IRI property, ConversionSink sink) {
+        if (members.size() == 1) return members.get(0);
+        List<String> sorted = members.stream().map(IRI::toString).sorted().collect(Collectors.toList());
+        IRI union = IRI.create("urn:owltouml:union:" + UUID.nameUUIDFromBytes(String.join(" ", sorted).getBytes(StandardCharsets.UTF_8)));
+        if (this.convertedClasses.contains(union)) return union;
+        String name = members.size() <= 3
+                ? members.stream().map(this::getClassName).collect(Collectors.joining("Or"))
+                : getClassName(members.get(0)) + "Or" + (members.size() - 1) + "Others";
+        String note = "Union of " + members.stream().map(m -> m.equals(OWL_THING) ? "owl:Thing" : getPrefixedIdentifier(m)).collect(Collectors.joining(", "));
+        if (sink != null) {
+            this.convertedClasses.add(union);
+            sink.addClass(union, getPrefix(property), name, Collections.singletonList(note));
+            this.stage.created();
+        } else {
+            Class cls = this.packages.get(getPrefix(property)).createOwnedClass(name, true);
+            this.classes.put(union, cls);
+            created(cls, union);
+            cls.createOwnedComment().setBody(note);
+        }
+        for (IRI member : members) this.unionMemberships.computeIfAbsent(member, m -> new ArrayList<>()).add(union);
+        return union;
+    }
+
+    private String getClassName(IRI iri) {
+        return iri.equals(OWL_THING) ? "Thing" : getIdentifier(iri);
+    }
+
+    /**
+     * @return the converted classes for the given IRIs, or owl:Thing if there are none
+     */
+    private List<IRI> getClasses(List<IRI> iris) {
+        List<IRI> classes = new ArrayList<>();
+        for (IRI iri : iris) {
+            if (iriIsTransformedToClass(iri))
+                classes.add(iri);
+        }
+        if (classes.size() == 0) classes.add(OWL_THING);
+        return classes;
     }
 
     /**
      * Processes subclassof axioms, turns them into UML inheritance
      */
-    private void processSubClassOf() {
-        this.ontology.classesInSignature().forEach(cls -> {
-            if (this.classes.containsKey(cls.getIRI())) {
-                this.ontology.subClassAxiomsForSubClass(cls).forEach(ax -> {
-                    if (ax.getSubClass().isOWLClass() && ax.getSuperClass().isOWLClass()) {
-                        IRI subClassIRI = ax.getSubClass().asOWLClass().getIRI();
-                        IRI superClassIRI = ax.getSuperClass().asOWLClass().getIRI();
-                        if (isValidPrefixIri(subClassIRI) && isValidPrefixIri(superClassIRI)) {
-                            if (this.classes.containsKey(subClassIRI) && this.classes.containsKey(superClassIRI)) {
-                                this.classes.get(subClassIRI).getSuperClasses().add(this.classes.get(superClassIRI));
-                            } else {
-                                this.log("Warning: ignoring subClassOf for " + subClassIRI + " -> " + superClassIRI);
-                            }
-                        }
+    void processSubClassOf() {
+        for (Plan plan : analyse(this.index.getClasses(), this::planSubClassOf)) {
+            applySubClassOf(plan);
+        }
+    }
+
+    private Plan planSubClassOf(IRI cls) {
+        if (!this.convertedClasses.contains(cls)) {
+            this.diagnostics.warn(Diagnostics.Reason.UNCONVERTED_SUBCLASS, cls);
+            return null;
+        }
+        List<IRI> superClasses = new ArrayList<>();
+        for (IRI superClassIRI : this.index.getSuperClasses(cls)) {
+            if (isValidPrefixIri(cls) && isValidPrefixIri(superClassIRI)) {
+                if (this.convertedClasses.contains(superClassIRI)) {
+                    superClasses.add(superClassIRI);
+                } else {
+                    this.diagnostics.warn(Diagnostics.Reason.UNCONVERTED_SUPERCLASS, superClassIRI);
+                }
+            }
+        }
+        if (!this.index.hasSubClassAxioms(cls) && !cls.equals(OWL_THING)) {
+            superClasses.add(OWL_THING);
+        }
+        superClasses.addAll(this.unionMemberships.getOrDefault(cls, Collections.emptyList()));
+        return new Plan(cls, null, null, Collections.singletonList(cls), superClasses);
+    }
+
+    private void applySubClassOf(Plan plan) {
+        if (plan == null) {
+            this.stage.skipped();
+            return;
+        }
+        Class cls = this.classes.get(plan.iri);
+        for (IRI general : plan.range) cls.getSuperClasses().add(this.classes.get(general));
+        this.stage.created(plan.range.size());
+        if (this.changes != null) this.changes.added.addAll(cls.getGeneralizations());
+    }
+
+    /**
+     * Updates the model of the last conversion after the given changes were applied to the loaded ontology. Only
+     * the entities in the signature of the changed axioms are converted again, the rest of the model is kept, so
+     * the work depends on the size of the change and not on the size of the ontology.
+     *
+     * @return the elements that were added, updated and removed
+     */
+    public ModelChanges applyChanges(List<? extends OWLOntologyChange> ontologyChanges) {
+        if (this.ontology == null || this.umlModel == null)
+            throw new IllegalStateException("Incremental conversion needs a UML model converted from a parsed ontology, not loaded from a snapshot");
+        Set<IRI> affected = new LinkedHashSet<>();
+        for (OWLOntologyChange change : ontologyChanges) {
+            if (!change.isAxiomChange() || change.getOntology() != this.ontology) continue;
+            OWLAxiom axiom = change.getAxiom();
+            axiom.signature().forEach(entity -> affected.add(entity.getIRI()));
+            if (axiom instanceof OWLAnnotationAssertionAxiom && ((OWLAnnotationAssertionAxiom) axiom).getSubject() instanceof IRI)
+                affected.add((IRI) ((OWLAnnotationAssertionAxiom) axiom).getSubject());
+        }
+        this.changes = new ModelChanges();
+        this.stage = this.metrics.start("applyChanges");
+        try {
+            this.index.update(this.ontology, affected);
+            this.comments.keySet().removeAll(affected);
+            Set<IRI> properties = new LinkedHashSet<>();
+            List<Class> removedClasses = new ArrayList<>();
+            List<IRI> addedClasses = new ArrayList<>();
+            List<Class> keptClasses = new ArrayList<>();
+            for (IRI iri : affected) {
+                Class cls = this.classes.get(iri);
+                boolean isClass = iri.equals(OWL_THING) || this.index.getClasses().contains(iri);
+                if (cls != null && !isClass) {
+                    removedClasses.add(cls);
+                    // attributes and associations of a removed class are converted again, possibly to owl:Thing
+                    for (Property attr : cls.getOwnedAttributes()) {
+                        if (attr.getAssociation() == null && this.sourceIris.containsKey(attr)) properties.add(this.sourceIris.get(attr));
                     }
-                });
-                if (this.ontology.subClassAxiomsForSubClass(cls).count() == 0) {
-                    this.classes.get(cls.getIRI()).getSuperClasses().add(this.classes.get(IRI.create("http://www.w3.org/2002/07/owl#Thing")));
+                    for (Association assoc : cls.getAssociations()) {
+                        if (this.sourceIris.containsKey(assoc)) properties.add(this.sourceIris.get(assoc));
+                    }
+                } else if (cls == null && isClass) {
+                    addedClasses.add(iri);
+                } else if (cls != null) {
+                    keptClasses.add(cls);
                 }
-            } else {
-                this.log("Warning: ignoring subClassOf for " + cls.getIRI());
+                if (this.elements.containsKey(iri) || this.index.getDataProperties().contains(iri) || this.index.getObjectProperties().contains(iri))
+                    properties.add(iri);
             }
-        });
+            for (Class cls : keptClasses) removeGeneralizations(cls);
+            for (IRI property : properties) removeElements(property);
+            for (Class cls : removedClasses) {
+                removeGeneralizations(cls);
+                IRI iri = this.sourceIris.remove(cls);
+                this.classes.remove(iri);
+                this.changes.removed.add(cls);
+                cls.destroy();
+            }
+            for (IRI iri : addedClasses) createClass(iri);
+            for (Class cls : keptClasses) {
+                for (Comment comment : new ArrayList<>(cls.getOwnedComments())) comment.destroy();
+                setAnnotations(this.sourceIris.get(cls), cls);
+                this.changes.updated.add(cls);
+            }
+            for (IRI property : properties) {
+                if (this.index.getDataProperties().contains(property)) {
+                    applyDataProperty(planDataProperty(property));
+                } else if (this.index.getObjectProperties().contains(property)) {
+                    applyObjectProperty(planObjectProperty(property));
+                }
+            }
+            for (Class cls : keptClasses) applySubClassOf(planSubClassOf(this.sourceIris.get(cls)));
+            for (IRI iri : addedClasses) {
+                if (this.classes.containsKey(iri)) applySubClassOf(planSubClassOf(iri));
+            }
+            this.stage.stop();
+            this.diagnostics.report(LOG);
+            return this.changes;
+        } finally {
+            this.stage = StageMetrics.detached();
+            this.changes = null;
+        }
     }
 
+    /**
+     * Loads the changes between the loaded ontology and a new version of it into the loaded ontology, then updates
+     * the model of the last conversion with {@link #applyChanges}
+     */
+    public ModelChanges updateOntology(OWLOntology newVersion) {
+        if (this.ontology == null)
+            throw new IllegalStateException("Incremental conversion needs a converted ontology that was parsed, not loaded from a snapshot");
+        List<OWLOntologyChange> ontologyChanges = new ArrayList<>();
+        this.ontology.axioms().filter(ax -> !newVersion.containsAxiom(ax)).forEach(ax -> ontologyChanges.add(new RemoveAxiom(this.ontology, ax)));
+        newVersion.axioms().filter(ax -> !this.ontology.containsAxiom(ax)).forEach(ax -> ontologyChanges.add(new AddAxiom(this.ontology, ax)));
+        this.manager.applyChanges(ontologyChanges);
+        return applyChanges(ontologyChanges);
+    }
+
+    /**
+     * Loads a new version of the loaded ontology from the given IRI, then updates the model with its changes
+     */
+    public ModelChanges updateOntology(String iri) throws OWLOntologyCreationException {
+        return updateOntology(loadVersion(iri));
+    }
+
+    /**
+     * @return a version of an ontology, loaded apart from the manager of the converter. Imports the loaded ontology
+     * already has are not loaded again, only the axioms of the ontology itself are compared.
+     */
+    public OWLOntology loadVersion(String iri) throws OWLOntologyCreationException {
+        OWLOntologyManager versions = configure(OWLManager.createOWLOntologyManager());
+        for (OWLOntologyIRIMapper mapper : this.manager.getIRIMappers()) versions.getIRIMappers().add(mapper);
+        if (this.ontology != null) {
+            OWLOntologyLoaderConfiguration config = versions.getOntologyLoaderConfiguration();
+            for (IRI imported : this.ontology.directImportsDocuments().collect(Collectors.toList())) {
+                config = config.addIgnoredImport(imported);
+            }
+            versions.setOntologyLoaderConfiguration(config);
+        }
+        return versions.loadOntology(IRI.create(iri));
+    }
+
+    private void removeGeneralizations(Class cls) {
+        for (Generalization generalization : new ArrayList<>(cls.getGeneralizations())) {
+            this.changes.removed.add(generalization);
+            generalization.destroy();
+        }
+    }
+
+    /**
+     * Removes the attributes or associations created for a property
+     */
+    private void removeElements(IRI property) {
+        List<Element> created = this.elements.remove(property);
+        if (created == null) return;
+        this.comments.remove(property);
+        for (Element element : created) {
+            if (element instanceof Association) {
+                // the navigable end is owned by the domain class, it would otherwise remain as a plain attribute
+                for (Property end : new ArrayList<>(((Association) element).getMemberEnds())) end.destroy();
+            }
+            this.sourceIris.remove(element);
+            this.changes.removed.add(element);
+            element.destroy();
+        }
+    }
+
+    /**
+     * Records an element created for an ontology entity
+     */
+    private void created(Element element, IRI iri) {
+        this.sourceIris.put(element, iri);
+        this.stage.created();
+        if (!(element instanceof Class)) this.elements.computeIfAbsent(iri, i -> new ArrayList<>()).add(element);
+        if (this.changes != null) this.changes.added.add(element);
+    }
+
+    /**
+     * Maps the entities to plans, in parallel when a pool is configured. The order of the entities is kept, so
+     * applying the plans in order gives the same model as a sequential conversion.
+     */
+    private List<Plan> analyse(List<IRI> entities, Function<IRI, Plan> analysis) {
+        if (this.pool == null) return entities.stream().map(analysis).collect(Collectors.toList());
+        return this.pool.submit(() -> entities.parallelStream().map(analysis).collect(Collectors.toList())).join();
+    }
+
+    /**
+     * Annotates an element with a comment of its own with the annotations of its entity, which are rendered once
+     * for all elements of the entity
+     */
     private void setAnnotations(IRI iri, Element el) {
-        this.ontology.annotationAssertionAxioms(iri).forEach(an -> {
-            el.createOwnedComment().setBody(an.getProperty() + " : " + an.annotationValue());
-        });
+        if (!this.annotationComments) return;
+        String body = this.comments.computeIfAbsent(iri, i -> String.join("\n\n", getAnnotations(i)));
+        if (body.isEmpty()) return;
+        Comment comment = el.createOwnedComment();
+        comment.setBody(body);
+        comment.getAnnotatedElements().add(el);
     }
 
     /**
      * @return prefix given a prefix IRI
      */
     private String getPrefix(IRI iri) {
-        String[] split = this.prefixManager.getPrefixIRIIgnoreQName(iri).split(":");
-        if (!split[0].isEmpty()) {
-            return split[0];
-        } else {
-            return this.prefix;
-        }
+        return this.prefixes.resolve(iri).prefix;
     }
 
     private String getIdentifier(IRI iri) {
-        return this.prefixManager.getPrefixIRIIgnoreQName(iri).split(":")[1];
+        return this.prefixes.resolve(iri).localName;
     }
 
     private String getPrefixedIdentifier(IRI iri) {
-        String prefixed = this.prefixManager.getPrefixIRIIgnoreQName(iri);
-        String[] split = prefixed.split(":");
-        if (!split[0].isEmpty()) {
-            return prefixed;
-        } else {
-            return this.prefix + prefixed;
-        }
+        return this.prefixes.resolve(iri).prefixedName;
     }
 
     private boolean isValidPrefixIri(IRI iri) {
-        boolean isValid = this.prefixManager.getPrefixIRIIgnoreQName(iri) != null;
-        if (!isValid) log("Warning: ignoring axiom for " + iri);
+        boolean isValid = this.prefixes.resolve(iri) != null;
+        if (!isValid) this.diagnostics.warn(Diagnostics.Reason.UNKNOWN_PREFIX, iri);
         return isValid;
     }
 
     private boolean iriIsTransformedToClass(IRI iri) {
-        boolean isClass = this.classes.get(iri) != null;
-        if (!isClass) log("Warning: ignoring axiom for " + iri);
+        boolean isClass = this.convertedClasses.contains(iri);
+        if (!isClass) this.diagnostics.warn(Diagnostics.Reason.NOT_A_CLASS, iri);
         return isClass;
     }
 
-    private void log(String message) {
-        System.out.println(message);
+    /**
+     * Result of the read-only analysis of a single entity, applied to the UML model or passed to a sink afterwards.
+     * The domain and range are the IRIs of converted classes.
+     */
+    private class Plan {
+        private final IRI iri;
+        private final String name;
+        private final OntologyIndex.Datatype type;
+        private final List<IRI> domain;
+        private final List<IRI> range;
+
+        private Plan(IRI iri, String name, OntologyIndex.Datatype type, List<IRI> domain, List<IRI> range) {
+            this.iri = iri;
+            this.name = name;
+            this.type = type;
+            this.domain = domain;
+            this.range = range;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.alliander.owltouml.converter;
+
+import org.semanticweb.owlapi.model.IRI;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves IRIs to prefixed names once per conversion, using the longest namespace that matches the IRI
+ */
+public class PrefixCache {
+
+    private static final Name INVALID = new Name(null, null, null);
+
+    private final String defaultPrefix;
+    private final Map<String, String> namespaces = new HashMap<>();
+    private final int[] lengths;
+    private final ConcurrentHashMap<IRI, Name> names = new ConcurrentHashMap<>();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param prefixes map from prefix name, including the colon, to namespace
+     * @param defaultPrefix prefix used for the empty prefix name
+     */
+    public PrefixCache(Map<String, String> prefixes, String defaultPrefix) {
+        this.defaultPrefix = defaultPrefix;
+        TreeSet<Integer> lengths = new TreeSet<>();
+        prefixes.forEach((prefixName, namespace) -> {
+            this.namespaces.putIfAbsent(namespace, prefixName.substring(0, prefixName.length() - 1));
+            lengths.add(namespace.length());
+        });
+        this.lengths = lengths.descendingSet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return the resolved name, or null if no namespace matches the IRI
+     */
+    Name resolve(IRI iri) {
+        this.lookups.increment();
+        Name name = this.names.computeIfAbsent(iri, this::compute);
+        return name == INVALID ? null : name;
+    }
+
+    private Name compute(IRI iri) {
+        this.misses.increment();
+        String iriString = iri.toString();
+        for (int length : this.lengths) {
+            if (length > iriString.length()) continue;
+            String prefix = this.namespaces.get(iriString.substring(0, length));
+            if (prefix != null) {
+                String localName = iriString.substring(length);
+                String packageName = prefix.isEmpty() ? this.defaultPrefix : prefix;
+                return new Name(packageName, localName, packageName + ":" + localName);
+            }
+        }
+        return INVALID;
+    }
+
+    public long getHits() {
+        return this.lookups.sum() - this.misses.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Prefix, local name and prefixed name of an IRI
+     */
+    static class Name {
+        final String prefix;
+        final String localName;
+        final String prefixedName;
+
+        private Name(String prefix, String localName, String prefixedName) {
+            this.prefix = prefix;
+            this.localName = localName;
+            this.prefixedName = prefixedName;
+        }
+    }
+}
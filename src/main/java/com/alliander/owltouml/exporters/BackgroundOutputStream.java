@@ -0,0 +1,145 @@
+package com.alliander.owltouml.exporters;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands the written bytes in blocks to a background thread that writes them to the target, so e.g. compressing the
+ * output runs next to producing it. A few blocks are buffered and reused. Errors of the background thread are thrown
+ * by the next write or by close, which waits for all blocks to be written and always closes the target.
+ */
+class BackgroundOutputStream extends OutputStream {
+
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int BLOCKS = 4;
+    private static final Block END = new Block(0);
+
+    private final OutputStream target;
+    private final BlockingQueue<Block> filled = new ArrayBlockingQueue<>(BLOCKS + 1);
+    private final BlockingQueue<Block> free = new ArrayBlockingQueue<>(BLOCKS + 1);
+    private final Thread thread;
+    private volatile IOException failure;
+    private Block block = new Block(BLOCK_SIZE);
+    private boolean closed;
+
+    BackgroundOutputStream(OutputStream target) {
+        this.target = target;
+        for (int i = 0; i < BLOCKS; i++) this.free.add(new Block(BLOCK_SIZE));
+        this.thread = new Thread(this::drain, "export-compression");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (this.block.length == BLOCK_SIZE) submit();
+        this.block.data[this.block.length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (this.block.length == BLOCK_SIZE) submit();
+            int n = Math.min(len, BLOCK_SIZE - this.block.length);
+            System.arraycopy(b, off, this.block.data, this.block.length, n);
+            this.block.length += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Hands the bytes written so far to the background thread, without waiting for them to be written
+     */
+    @Override
+    public void flush() throws IOException {
+        if (this.block.length > 0) submit();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) return;
+        this.closed = true;
+        IOException error = null;
+        try {
+            flush();
+        } catch (IOException e) {
+            error = e;
+        }
+        try {
+            put(END);
+            this.thread.join();
+        } catch (InterruptedIOException e) {
+            this.thread.interrupt();
+            if (error == null) error = e;
+        } catch (InterruptedException e) {
+            this.thread.interrupt();
+            Thread.currentThread().interrupt();
+            if (error == null) error = new InterruptedIOException("Interrupted while writing the export");
+        }
+        if (error == null) error = this.failure;
+        try {
+            this.target.close();
+        } catch (IOException e) {
+            if (error == null) throw e;
+            if (error != e) error.addSuppressed(e);
+        }
+        if (error != null) throw error;
+    }
+
+    private void submit() throws IOException {
+        if (this.failure != null) throw this.failure;
+        put(this.block);
+        try {
+            this.block = this.free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the export");
+        }
+    }
+
+    private void put(Block block) throws InterruptedIOException {
+        try {
+            this.filled.put(block);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the export");
+        }
+    }
+
+    /**
+     * Writes the filled blocks until the end, after a failure the blocks are only returned so the writer does not block
+     */
+    private void drain() {
+        try {
+            for (Block next = this.filled.take(); next != END; next = this.filled.take()) {
+                if (this.failure == null) {
+                    try {
+                        this.target.write(next.data, 0, next.length);
+                    } catch (IOException e) {
+                        this.failure = e;
+                    } catch (RuntimeException | Error e) {
+                        // the writer would otherwise wait for a free block forever
+                        this.failure = new IOException("Could not write the export", e);
+                    }
+                }
+                next.length = 0;
+                this.free.put(next);
+            }
+        } catch (InterruptedException e) {
+            this.failure = new InterruptedIOException("Interrupted while writing the export");
+        }
+    }
+
+    private static class Block {
+        private final byte[] data;
+        private int length;
+
+        private Block(int size) {
+            this.data = new byte[size];
+        }
+    }
+}
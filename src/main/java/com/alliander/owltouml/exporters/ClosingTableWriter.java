@@ -0,0 +1,55 @@
+package com.alliander.owltouml.exporters;
+
+import javax.xml.transform.TransformerException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes rows through another writer to a stream that is closed after the writer, e.g. a compressed file
+ */
+class ClosingTableWriter implements TableWriter {
+
+    private final TableWriter writer;
+    private final OutputStream stream;
+
+    ClosingTableWriter(TableWriter writer, OutputStream stream) {
+        this.writer = writer;
+        this.stream = stream;
+    }
+
+    @Override
+    public void open(String name, String guid, List<String> tables) throws IOException {
+        this.writer.open(name, guid, tables);
+    }
+
+    @Override
+    public void write(String table, TableRow row) throws IOException {
+        this.writer.write(table, row);
+    }
+
+    @Override
+    public void close() throws IOException, TransformerException {
+        try {
+            this.writer.close();
+        } catch (IOException | TransformerException | RuntimeException e) {
+            try {
+                this.stream.close();
+            } catch (IOException closing) {
+                e.addSuppressed(closing);
+            }
+            throw e;
+        }
+        this.stream.close();
+    }
+
+    @Override
+    public void abort() {
+        this.writer.abort();
+        try {
+            this.stream.close();
+        } catch (IOException ignored) {
+            // the export failed already, the file is incomplete either way
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.alliander.owltouml.exporters;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Layered layout of the classes of a package, with every class in a layer below its superclasses. The classes are
+ * split into diagrams of a bounded size, keeping inheritance trees together when they fit. Layers are ordered by the
+ * position of the superclasses, wide layers wrap into more rows. Apart from sorting the layers the work is linear in
+ * the number of classes and generalizations.
+ */
+class DiagramLayout {
+
+    private static final int MARGIN = 20;
+    private static final int GAP = 40;
+    private static final int MAX_ROW_WIDTH = 1600;
+
+    private final int maxObjects;
+
+    DiagramLayout(int maxObjects) {
+        this.maxObjects = Math.max(1, maxObjects);
+    }
+
+    /**
+     * @param parents for every node the nodes of its superclasses
+     * @return the placements of the nodes on each diagram
+     */
+    List<List<Placement>> layout(int[] widths, int[] heights, int[][] parents) {
+        int[] layers = getLayers(parents);
+        List<List<Placement>> diagrams = new ArrayList<>();
+        for (List<Integer> chunk : getChunks(layers, parents)) {
+            diagrams.add(place(chunk, layers, widths, heights, parents));
+        }
+        return diagrams;
+    }
+
+    /**
+     * @return the length of the longest path to a root for every node, nodes in a cycle get layer 0
+     */
+    private static int[] getLayers(int[][] parents) {
+        int n = parents.length;
+        int[] layers = new int[n];
+        int[] remaining = new int[n];
+        List<List<Integer>> children = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) children.add(new ArrayList<>());
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            remaining[i] = parents[i].length;
+            for (int parent : parents[i]) children.get(parent).add(i);
+            if (remaining[i] == 0) ready.add(i);
+        }
+        while (!ready.isEmpty()) {
+            int node = ready.poll();
+            for (int child : children.get(node)) {
+                layers[child] = Math.max(layers[child], layers[node] + 1);
+                if (--remaining[child] == 0) ready.add(child);
+            }
+        }
+        return layers;
+    }
+
+    /**
+     * Packs the inheritance trees into chunks of at most the maximum size, a tree that does not fit on its own is
+     * split layer by layer
+     */
+    private List<List<Integer>> getChunks(int[] layers, int[][] parents) {
+        int n = parents.length;
+        int[] roots = new int[n];
+        for (int i = 0; i < n; i++) roots[i] = i;
+        for (int i = 0; i < n; i++) {
+            for (int parent : parents[i]) roots[find(roots, i)] = find(roots, parent);
+        }
+        Map<Integer, List<Integer>> trees = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) trees.computeIfAbsent(find(roots, i), r -> new ArrayList<>()).add(i);
+
+        List<List<Integer>> chunks = new ArrayList<>();
+        List<Integer> chunk = new ArrayList<>();
+        for (List<Integer> tree : trees.values()) {
+            if (tree.size() > this.maxObjects) {
+                tree.sort(Comparator.comparingInt((Integer node) -> layers[node]).thenComparingInt(node -> node));
+                for (int start = 0; start < tree.size(); start += this.maxObjects) {
+                    chunks.add(new ArrayList<>(tree.subList(start, Math.min(tree.size(), start + this.maxObjects))));
+                }
+                continue;
+            }
+            if (chunk.size() + tree.size() > this.maxObjects) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+            }
+            chunk.addAll(tree);
+        }
+        if (!chunk.isEmpty()) chunks.add(chunk);
+        return chunks;
+    }
+
+    private static int find(int[] roots, int node) {
+        while (roots[node] != node) {
+            roots[node] = roots[roots[node]];
+            node = roots[node];
+        }
+        return node;
+    }
+
+    /**
+     * Places the layers of a chunk from top to bottom, every layer ordered by the average center of the superclasses
+     * placed before, classes without those follow in their original order
+     */
+    private static List<Placement> place(List<Integer> chunk, int[] layers, int[] widths, int[] heights, int[][] parents) {
+        Map<Integer, List<Integer>> byLayer = new TreeMap<>();
+        for (int node : chunk) byLayer.computeIfAbsent(layers[node], l -> new ArrayList<>()).add(node);
+        Map<Integer, Integer> centers = new HashMap<>();
+        List<Placement> placements = new ArrayList<>(chunk.size());
+        int y = MARGIN;
+        for (List<Integer> layer : byLayer.values()) {
+            double[] keys = new double[layer.size()];
+            Integer[] order = new Integer[layer.size()];
+            for (int i = 0; i < layer.size(); i++) {
+                int node = layer.get(i);
+                double sum = 0;
+                int count = 0;
+                for (int parent : parents[node]) {
+                    Integer center = centers.get(parent);
+                    if (center != null) {
+                        sum += center;
+                        count++;
+                    }
+                }
+                keys[i] = count > 0 ? sum / count : Double.MAX_VALUE;
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingDouble((Integer i) -> keys[i]).thenComparingInt(i -> i));
+            int x = MARGIN;
+            int rowHeight = 0;
+            for (int i : order) {
+                int node = layer.get(i);
+                if (x > MARGIN && x + widths[node] > MAX_ROW_WIDTH) {
+                    x = MARGIN;
+                    y += rowHeight + GAP;
+                    rowHeight = 0;
+                }
+                // EA measures y downwards as negative values
+                placements.add(new Placement(node, x, -y, x + widths[node], -(y + heights[node])));
+                centers.put(node, x + widths[node] / 2);
+                x += widths[node] + GAP;
+                rowHeight = Math.max(rowHeight, heights[node]);
+            }
+            y += rowHeight + 2 * GAP;
+        }
+        return placements;
+    }
+
+    /**
+     * Rectangle of a node on a diagram
+     */
+    static class Placement {
+        final int node;
+        final int left;
+        final int top;
+        final int right;
+        final int bottom;
+
+        Placement(int node, int left, int top, int right, int bottom) {
+            this.node = node;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.alliander.owltouml.exporters;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the complete export as a DOM document and serializes it to a file or a stream when closed
+ */
+class DomTableWriter implements TableWriter {
+
+    private final StreamResult result;
+    private final Document dom;
+    private Element root;
+    private Map<String, Element> tables;
+
+    DomTableWriter(File file) throws ParserConfigurationException {
+        this(new StreamResult(file));
+    }
+
+    DomTableWriter(OutputStream target) throws ParserConfigurationException {
+        this(new StreamResult(target));
+    }
+
+    private DomTableWriter(StreamResult result) throws ParserConfigurationException {
+        this.result = result;
+        this.dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+    }
+
+    @Override
+    public void open(String name, String guid, List<String> tables) {
+        this.root = this.dom.createElement("Package");
+        this.root.setAttribute("name", name);
+        this.root.setAttribute("guid", guid);
+        this.tables = new HashMap<>();
+        for (String table : tables) {
+            Element element = this.dom.createElement("Table");
+            element.setAttribute("name", table);
+            this.root.appendChild(element);
+            this.tables.put(table, element);
+        }
+    }
+
+    @Override
+    public void write(String table, TableRow row) {
+        Element element = this.dom.createElement("Row");
+        for (int i = 0; i < row.size(); i++) {
+            Element column = this.dom.createElement("Column");
+            column.setAttribute("name", row.name(i));
+            column.setAttribute("value", row.value(i));
+            element.appendChild(column);
+        }
+        if (row.hasExtension()) {
+            Element extension = this.dom.createElement("Extension");
+            row.getExtension().forEach(extension::setAttribute);
+            element.appendChild(extension);
+        }
+        this.tables.get(table).appendChild(element);
+    }
+
+    @Override
+    public void close() throws TransformerException {
+        this.dom.appendChild(this.root);
+        Transformer tr = TransformerFactory.newInstance().newTransformer();
+        tr.setOutputProperty(OutputKeys.INDENT, "yes");
+        tr.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+        tr.transform(new DOMSource(this.dom), this.result);
+    }
+
+    /**
+     * The document is only written when closed, there is nothing to release
+     */
+    @Override
+    public void abort() {
+    }
+}
@@ -1,362 +1,1028 @@
 package com.alliander.owltouml.exporters;
 
+import com.alliander.owltouml.converter.ConversionSink;
+import com.alliander.owltouml.converter.ModelChanges;
+import com.alliander.owltouml.metrics.ConversionMetrics;
+import com.alliander.owltouml.metrics.StageMetrics;
 import org.eclipse.uml2.uml.*;
 import org.eclipse.uml2.uml.Class;
 import org.eclipse.uml2.uml.Package;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.semanticweb.owlapi.model.IRI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.File;
-import java.sql.SQLOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class EnterpriseArchitectNativeExporter {
 
-    private Document dom;
-    private Element root;
-    private Element tPackage;
-    private Element tObject;
-    private Element tAttribute;
-    private Element tDiagram;
-    private Element tDiagramObjects;
-    private Element currentPackage;
-    private String inputPath;
+    private static final Logger LOG = LoggerFactory.getLogger(EnterpriseArchitectNativeExporter.class);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final List<String> TABLES = Arrays.asList("t_package", "t_object", "t_attribute", "t_connector", "t_diagram", "t_diagramobjects");
+    private static final List<String> DELTA_TABLES = Arrays.asList("t_object", "t_attribute", "t_connector");
+
+    private TableWriter writer;
     private int id;
-    private HashMap<String, Element> elementList;
-    private HashMap<String, List<String>> tree;
-    private HashMap<String, List<String>> diagramList;
-    private Element tConnector;
+    private Map<Element, ExportedElement> registry;
+    private Map<Element, ExportedElement> shared = Collections.emptyMap();
+    private Map<String, ExportedElement> replaced = Collections.emptyMap();
     private Model model;
+    private boolean streaming;
+    private OutputFormat format = OutputFormat.XML;
+    private boolean backgroundCompression;
+    private Path projectTemplate;
+    private boolean diagrams;
+    private int diagramSize = 100;
+    private boolean deterministic;
+    private Map<Element, IRI> sourceIris = Collections.emptyMap();
+    private Function<Element, List<String>> annotations;
+    // the note of every source IRI, rendered once per export as all elements of an entity get the same note
+    private Map<IRI, String> notes = new ConcurrentHashMap<>();
+    private Map<String, Integer> seeds;
+    private LocalDateTime runTime;
+    private String timestamp;
+    private ConversionMetrics metrics = new ConversionMetrics("export");
+    private StageMetrics stage = StageMetrics.detached();
 
     public void setUmlModel(Model model) {
         this.model = model;
     }
 
-    public void export(String name) throws ParserConfigurationException, TransformerException {
+    /**
+     * Write rows to disk as they are produced instead of building the whole document in memory
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Set the format of the exported files, defaults to plain XML
+     */
+    public void setOutputFormat(OutputFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Compress the output on a background thread, while the rows are serialized
+     */
+    public void setBackgroundCompression(boolean backgroundCompression) {
+        this.backgroundCompression = backgroundCompression;
+    }
+
+    /**
+     * Set the empty EA project that is copied for exports in the QEA format
+     */
+    public void setProjectTemplate(Path projectTemplate) {
+        this.projectTemplate = projectTemplate;
+    }
+
+    /**
+     * Generate a diagram of the classes of every package, with a layered layout of their generalizations
+     */
+    public void setDiagrams(boolean diagrams) {
+        this.diagrams = diagrams;
+    }
+
+    /**
+     * Set the maximum number of classes on a diagram, the classes of larger packages are split over more diagrams
+     */
+    public void setDiagramSize(int diagramSize) {
+        this.diagramSize = diagramSize;
+    }
+
+    /**
+     * Derive name-based GUIDs from the source IRIs, so repeated exports of the same ontology are identical
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Set the IRIs of the ontology entities the UML elements were created from, used for deterministic GUIDs
+     */
+    public void setSourceIris(Map<Element, IRI> sourceIris) {
+        this.sourceIris = sourceIris;
+    }
+
+    /**
+     * Set the annotations of the UML elements, which are rendered to notes as the rows are written instead of
+     * being read from the comments of the model. Elements without annotations keep the notes of their comments. The
+     * note is rendered once for all elements with the same source IRI.
+     */
+    public void setAnnotations(Function<Element, List<String>> annotations) {
+        this.annotations = annotations;
+    }
+
+    /**
+     * Set the creation and modification date written to every row, defaults to the start of the export
+     */
+    public void setTimestamp(LocalDateTime runTime) {
+        this.runTime = runTime;
+    }
+
+    /**
+     * Set the metrics the export stages are recorded in
+     */
+    public void setMetrics(ConversionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Exports to name with the extension of the output format
+     */
+    public void export(String name) throws ParserConfigurationException, TransformerException, IOException {
+        export(getFile(name, ""));
+    }
+
+    /**
+     * Exports to the given file in the output format, whatever its extension
+     */
+    public void export(File file) throws ParserConfigurationException, TransformerException, IOException {
         System.out.println("Start exporting.");
-        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        elementList = new HashMap<String, Element>();
-        tree = new HashMap<String, List<String>>();
-        diagramList = new HashMap<String, List<String>>();
-        this.id = 0;
-        this.dom = builder.newDocument();
-        this.inputPath = "root";
+        open(file);
+        write();
+        System.out.println("Finished exporting.");
+    }
+
+    /**
+     * @return the file of a part of an export with the given name, with the extension of the output format
+     */
+    public File getFile(String name, String part) {
+        return new File(name + part + this.format.getExtension());
+    }
+
+    /**
+     * @return the file format of the exports
+     */
+    public OutputFormat getOutputFormat() {
+        return this.format;
+    }
+
+    /**
+     * Exports to a stream in the output format, the stream is flushed but not closed. A zip archive gets a single
+     * entry name.xml. Streaming exports spool to the temporary directory. Not available for project files.
+     */
+    public void export(OutputStream out, String name) throws ParserConfigurationException, TransformerException, IOException {
+        OutputStream target = this.format.open(out, name, this.backgroundCompression);
+        try {
+            TableWriter writer = this.streaming ? new StreamingTableWriter(target, new File(System.getProperty("java.io.tmpdir"))) : new DomTableWriter(target);
+            open(new ClosingTableWriter(writer, target));
+        } catch (ParserConfigurationException e) {
+            target.close();
+            throw e;
+        }
+        write();
+        out.flush();
+    }
+
+    /**
+     * Opens an export to name.xml that is written by the returned sink while the ontology is converted with
+     * {@link com.alliander.owltouml.converter.OwlToUmlConverter#convert(ConversionSink)}, without a UML model. The
+     * rows are the same as those of an export of the model, in a different order. Changes cannot be exported after
+     * it, and diagrams are not supported as their layout needs all classes.
+     */
+    public ConversionSink openSink(String name) throws ParserConfigurationException, IOException {
+        if (this.diagrams) throw new IllegalStateException("Diagrams cannot be generated by a direct export");
+        open(getFile(name, ""));
+        this.registry = null;
+        return new RowSink();
+    }
+
+    /**
+     * Exports every package of the root package to its own file name.package.xml, written by the given number of
+     * threads at the same time. The root package is written to name.root.xml, the connectors between classes of
+     * different packages to name.connectors.xml, and name.index.xml lists the files in the order they have to be
+     * imported. All files but the index get the extension of the output format instead of .xml. The GUIDs and ids of
+     * all classes are assigned up front, so connectors can refer to classes in other partitions, and every partition
+     * gets its own range of ids. Not available for project files, which cannot refer to rows in other files.
+     */
+    public void exportPartitioned(String name, int threads) throws ParserConfigurationException, TransformerException, IOException, InterruptedException {
+        if (this.format == OutputFormat.QEA) throw new IllegalStateException("A project file cannot be partitioned");
+        LOG.info("Start exporting partitions of {}", name);
+        File directory = new File(name).getAbsoluteFile().getParentFile();
+        String baseName = new File(name).getName();
+        this.stage = this.metrics.start("export.assign");
+        Package rootPackage = this.model.getNestedPackages().get(0);
+        File rootFile = new File(directory, getFile(baseName, ".root").getName());
+        open(rootFile);
+        ExportedElement root;
+        try {
+            root = createRootPackage(rootPackage);
+            this.writer.close();
+        } catch (IOException | TransformerException | RuntimeException e) {
+            this.writer.abort();
+            throw e;
+        }
+
+        List<Partition> partitions = new ArrayList<>();
+        for (Package p : rootPackage.getNestedPackages()) {
+            partitions.add(new Partition(p, new File(directory, getFile(baseName, "." + p.getName()).getName()), getGuid(p, "")));
+        }
+        List<Element> crossConnectors = new ArrayList<>();
+        for (Partition partition : partitions) {
+            for (Element e : partition.pkg.getOwnedElements()) {
+                if (e instanceof Class) {
+                    Class cls = (Class) e;
+                    this.registry.put(cls, new ExportedElement(getGuid(cls, ""), getId(), null));
+                    partition.classes.add(cls);
+                    for (Property attr : cls.getAttributes()) {
+                        if (attr.getAssociation() == null) partition.rows++;
+                    }
+                    for (Generalization generalization : cls.getGeneralizations()) {
+                        if (generalization.getGeneral().getPackage() == partition.pkg) {
+                            partition.connectors.add(generalization);
+                        } else {
+                            crossConnectors.add(generalization);
+                        }
+                    }
+                } else if (e instanceof Association) {
+                    Association assoc = (Association) e;
+                    if (assoc.getMemberEnds().get(0).getType().getPackage() == partition.pkg
+                            && assoc.getMemberEnds().get(1).getType().getPackage() == partition.pkg) {
+                        partition.connectors.add(assoc);
+                    } else {
+                        crossConnectors.add(assoc);
+                    }
+                }
+            }
+            // the package row, its object row, the attributes, the connectors and at most a diagram per class
+            partition.firstId = this.id;
+            this.id += 2 + partition.rows + partition.connectors.size() + (this.diagrams ? partition.classes.size() : 0);
+        }
+        this.stage.stop();
+
+        this.stage = this.metrics.start("export.partitions");
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Map<Element, ExportedElement>>> written = new ArrayList<>();
+            for (Partition partition : partitions) {
+                written.add(pool.submit(() -> createPartitionExporter(partition).writePartition(partition, root)));
+            }
+            // the classes are exported again by their partition, now with their package as owner
+            for (Future<Map<Element, ExportedElement>> future : written) {
+                this.registry.putAll(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof TransformerException) throw (TransformerException) e.getCause();
+            if (e.getCause() instanceof ParserConfigurationException) throw (ParserConfigurationException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        this.stage.stop();
+
+        this.stage = this.metrics.start("export.connectors");
+        File connectorFile = new File(directory, getFile(baseName, ".connectors").getName());
+        this.writer = createWriter(connectorFile);
+        try {
+            this.writer.open(rootPackage.getName(), root.guid, TABLES);
+            for (Element connector : crossConnectors) exportConnector(connector);
+            this.writer.close();
+        } catch (IOException | TransformerException | RuntimeException e) {
+            this.writer.abort();
+            throw e;
+        }
+        writeIndex(new File(directory, baseName + ".index.xml"), rootPackage.getName(), root.guid, rootFile, partitions, connectorFile, crossConnectors.size());
+        this.stage.stop();
+        this.stage = StageMetrics.detached();
+        LOG.info("Finished exporting {} partitions of {}", partitions.size(), name);
+    }
+
+    /**
+     * @return an exporter with the settings of this exporter that writes one partition, with the ids of its range
+     * and the GUIDs of all classes
+     */
+    private EnterpriseArchitectNativeExporter createPartitionExporter(Partition partition) throws ParserConfigurationException, IOException {
+        EnterpriseArchitectNativeExporter exporter = new EnterpriseArchitectNativeExporter();
+        exporter.streaming = this.streaming;
+        exporter.format = this.format;
+        exporter.backgroundCompression = this.backgroundCompression;
+        exporter.projectTemplate = this.projectTemplate;
+        exporter.diagrams = this.diagrams;
+        exporter.diagramSize = this.diagramSize;
+        exporter.deterministic = this.deterministic;
+        exporter.sourceIris = this.sourceIris;
+        exporter.annotations = this.annotations;
+        exporter.stage = this.stage;
+        exporter.open(partition.file);
+        exporter.notes = this.notes;
+        exporter.timestamp = this.timestamp;
+        exporter.id = partition.firstId;
+        exporter.shared = this.registry;
+        return exporter;
+    }
+
+    /**
+     * @return the elements written to the partition
+     */
+    private Map<Element, ExportedElement> writePartition(Partition partition, ExportedElement root) throws IOException, TransformerException {
+        try {
+            this.writer.open(partition.pkg.getName(), partition.guid, TABLES);
+            ExportedElement exportedPackage = writePackage(partition.pkg.getName(), partition.guid, root);
+            this.registry.put(partition.pkg, exportedPackage);
+            for (Class cls : partition.classes) {
+                ExportedElement exportedClass = exportClass(cls, exportedPackage);
+                for (Property attr : cls.getAttributes()) {
+                    if (attr.getAssociation() == null) exportAttribute(attr, exportedClass);
+                }
+            }
+            for (Element connector : partition.connectors) exportConnector(connector);
+            if (this.diagrams) exportDiagrams(layout(partition.pkg));
+            this.writer.close();
+        } catch (IOException | TransformerException | RuntimeException e) {
+            this.writer.abort();
+            throw e;
+        }
+        return this.registry;
+    }
 
-        processModel();
+    /**
+     * Writes the index of a partitioned export, the files are listed in the order they have to be imported
+     */
+    private void writeIndex(File file, String name, String guid, File rootFile, List<Partition> partitions, File connectorFile, int connectors) throws ParserConfigurationException, TransformerException {
+        org.w3c.dom.Document dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        org.w3c.dom.Element index = dom.createElement("Partitions");
+        index.setAttribute("name", name);
+        index.setAttribute("guid", guid);
+        dom.appendChild(index);
+        index.appendChild(getIndexEntry(dom, rootFile, name, guid, 0, 0));
+        for (Partition partition : partitions) {
+            index.appendChild(getIndexEntry(dom, partition.file, partition.pkg.getName(), partition.guid, partition.classes.size(), partition.connectors.size()));
+        }
+        index.appendChild(getIndexEntry(dom, connectorFile, name, guid, 0, connectors));
+        transform(dom, file);
+    }
 
-        dom.appendChild(this.root);
+    private static void transform(org.w3c.dom.Document dom, File file) throws TransformerException {
         Transformer tr = TransformerFactory.newInstance().newTransformer();
         tr.setOutputProperty(OutputKeys.INDENT, "yes");
         tr.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-        tr.setOutputProperty(OutputKeys.INDENT, "yes");
-        tr.transform(new DOMSource(dom), new StreamResult(new File(name + ".xml")));
-        System.out.println("Finished exporting.");
+        tr.transform(new DOMSource(dom), new StreamResult(file));
     }
 
-    private void processModel() {
+    private static org.w3c.dom.Element getIndexEntry(org.w3c.dom.Document dom, File file, String packageName, String guid, int classes, int connectors) {
+        org.w3c.dom.Element entry = dom.createElement("Partition");
+        entry.setAttribute("file", file.getName());
+        entry.setAttribute("package", packageName);
+        entry.setAttribute("guid", guid);
+        entry.setAttribute("classes", "" + classes);
+        entry.setAttribute("connectors", "" + connectors);
+        return entry;
+    }
+
+    /**
+     * Runs the export stages on the opened writer, recording each stage in the metrics. The writer is aborted when
+     * a stage fails.
+     */
+    private void write() throws TransformerException, IOException {
+        try {
+            this.stage = this.metrics.start("export.processObjects");
+            processObjects();
+            this.stage.stop();
+            this.stage = this.metrics.start("export.processConnectors");
+            processConnectors();
+            this.stage.stop();
+            if (this.diagrams) {
+                this.stage = this.metrics.start("export.processDiagrams");
+                processDiagrams();
+                this.stage.stop();
+            }
+            this.stage = this.metrics.start("export.serialize");
+            close();
+            this.stage.stop();
+        } catch (IOException | TransformerException | RuntimeException e) {
+            this.writer.abort();
+            throw e;
+        } finally {
+            this.stage = StageMetrics.detached();
+        }
+    }
+
+    /**
+     * Prepares an export to the given file. The stages are package-private so the benchmarks can run them one at a time.
+     */
+    void open(File file) throws ParserConfigurationException, IOException {
+        open(createWriter(file));
+    }
+
+    /**
+     * @return a writer to the file in the output format, compressed files are written through a stream
+     */
+    private TableWriter createWriter(File file) throws ParserConfigurationException, IOException {
+        if (this.format == OutputFormat.QEA) {
+            if (this.projectTemplate == null) throw new IllegalStateException("Exports to a project file need an empty project as template");
+            return new SqliteTableWriter(file, this.projectTemplate);
+        }
+        if (this.format == OutputFormat.XML && !this.backgroundCompression)
+            return this.streaming ? new StreamingTableWriter(file) : new DomTableWriter(file);
+        OutputStream out = this.format.open(file, this.backgroundCompression);
+        try {
+            TableWriter writer = this.streaming ? new StreamingTableWriter(out, file.getAbsoluteFile().getParentFile()) : new DomTableWriter(out);
+            return new ClosingTableWriter(writer, out);
+        } catch (ParserConfigurationException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    private void open(TableWriter writer) {
+        this.writer = writer;
+        registry = new IdentityHashMap<Element, ExportedElement>();
+        seeds = new HashMap<String, Integer>();
+        this.notes = new ConcurrentHashMap<>();
+        timestamp = DATE_FORMAT.format(this.runTime != null ? this.runTime : LocalDateTime.now());
+        this.id = 0;
+    }
+
+    /**
+     * Writes the packages, classes and attributes
+     */
+    void processObjects() throws IOException {
         Package rootPackage = this.model.getNestedPackages().get(0);
-        createRootPackage(rootPackage.getName());
-        rootPackage.getNestedPackages().forEach(p -> {
-            createPackage(p.getName(), this.inputPath);
-            p.getOwnedElements().forEach(e -> {
+        ExportedElement root = createRootPackage(rootPackage);
+        for (Package p : rootPackage.getNestedPackages()) {
+            ExportedElement exportedPackage = createPackage(p, root);
+            for (Element e : p.getOwnedElements()) {
                 if (e instanceof Class) {
                     Class cls = (Class) e;
-                    String classGuid = getGuid();
-                    String note = "";
-                    for (Comment comment : cls.getOwnedComments()) {
-                        note += comment.getBody() + "\n\n";
+                    ExportedElement exportedClass = exportClass(cls, exportedPackage);
+                    for (Property attr : cls.getAttributes()) {
+                        if (attr.getAssociation() == null) exportAttribute(attr, exportedClass);
                     }
-                    Element classObject = getTClassObject(cls.getName(), classGuid, getAttributeValue(this.elementList.get(this.inputPath+p.getName()), "ea_guid"), note);
-                    this.tObject.appendChild(classObject);
-                    this.elementList.put(cls.getName(), classObject);
-                    this.tree.put(cls.getName(), new ArrayList<String>());
-
-                    cls.getAttributes().forEach(attr -> {
-                        if (attr.getAssociation() == null) {
-                            String attrNote = "";
-                            for (Comment comment : attr.getOwnedComments()) {
-                                attrNote += comment.getBody() + "\n\n";
-                            }
-                            this.tAttribute.appendChild(getTAttributeRow(attr.getName(), getGuid(), classGuid, attrNote, attr.getType().getName()));
-                        }
-                    });
+                } else if (!(e instanceof Association)) {
+                    this.stage.skipped();
                 }
-            });
-        });
+            }
+        }
+    }
 
-        rootPackage.getNestedPackages().forEach(p -> {
-            p.getOwnedElements().forEach(e -> {
+    /**
+     * Writes the generalizations and associations between the classes written before
+     */
+    void processConnectors() throws IOException {
+        Package rootPackage = this.model.getNestedPackages().get(0);
+        for (Package p : rootPackage.getNestedPackages()) {
+            for (Element e : p.getOwnedElements()) {
                 if (e instanceof  Class) {
-                    Class cls = (Class) e;
                     // inheritance
-                    cls.getSuperClasses().forEach(superCls -> {
-                        Element parent = this.elementList.get(superCls.getName());
-                        this.tConnector.appendChild(getTConnectorRow("Generalization", getAttributeValue(this.elementList.get(cls.getName()), "ea_guid"), getAttributeValue(parent, "ea_guid"), "", getAttributeValue(this.elementList.get(cls.getName()), "Object_ID"), getAttributeValue(parent, "Object_ID")));
-                    });
+                    for (Generalization generalization : ((Class) e).getGeneralizations()) {
+                        exportGeneralization(generalization);
+                    }
                 }
                 if (e instanceof Association) {
-                    Association assoc = (Association) e;
-                    this.tConnector.appendChild(getTConnectorRow("Association", getAttributeValue(this.elementList.get(assoc.getMemberEnds().get(1).getType().getName()), "ea_guid"), getAttributeValue(this.elementList.get(assoc.getMemberEnds().get(0).getType().getName()), "ea_guid"), assoc.getMemberEnds().get(0).getName(), getAttributeValue(this.elementList.get(assoc.getMemberEnds().get(1).getType().getName()), "Object_ID"), getAttributeValue(this.elementList.get(assoc.getMemberEnds().get(0).getType().getName()), "Object_ID")));
+                    exportAssociation((Association) e);
                 }
-            });
-        });
+            }
+        }
+    }
+
+    /**
+     * Writes the diagrams of the packages, the layouts are computed in parallel
+     */
+    void processDiagrams() throws IOException {
+        List<Package> packages = this.model.getNestedPackages().get(0).getNestedPackages();
+        List<PackageLayout> layouts = packages.parallelStream().map(this::layout).collect(Collectors.toList());
+        for (PackageLayout layout : layouts) exportDiagrams(layout);
     }
 
-    private void createRootPackage(String name) {
-        this.root = this.dom.createElement("Package");
-        String guid = getGuid();
-        this.root.setAttribute("name", name);
-        this.root.setAttribute("guid", guid);
-        setupTables();
+    /**
+     * @return the layout of the diagrams of a package, the size of a class depends on its name and attributes
+     */
+    private PackageLayout layout(Package p) {
+        List<Class> classes = new ArrayList<>();
+        for (Element e : p.getOwnedElements()) {
+            if (e instanceof Class) classes.add((Class) e);
+        }
+        Map<Class, Integer> index = new IdentityHashMap<>();
+        for (int i = 0; i < classes.size(); i++) index.put(classes.get(i), i);
+        int[] widths = new int[classes.size()];
+        int[] heights = new int[classes.size()];
+        int[][] parents = new int[classes.size()][];
+        for (int i = 0; i < classes.size(); i++) {
+            Class cls = classes.get(i);
+            int longest = cls.getName().length();
+            int lines = 0;
+            for (Property attr : cls.getAttributes()) {
+                if (attr.getAssociation() != null) continue;
+                longest = Math.max(longest, attr.getName().length() + attr.getType().getName().length() + 2);
+                lines++;
+            }
+            widths[i] = Math.min(400, Math.max(120, 7 * longest + 20));
+            heights[i] = 50 + 14 * lines;
+            List<Integer> generals = new ArrayList<>();
+            for (Generalization generalization : cls.getGeneralizations()) {
+                Integer general = index.get(generalization.getGeneral());
+                if (general != null) generals.add(general);
+            }
+            parents[i] = generals.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return new PackageLayout(p, classes, new DiagramLayout(this.diagramSize).layout(widths, heights, parents));
+    }
+
+    private void exportDiagrams(PackageLayout layout) throws IOException {
+        ExportedElement exportedPackage = lookup(layout.pkg);
+        for (int i = 0; i < layout.diagrams.size(); i++) {
+            String name = layout.diagrams.size() == 1 ? layout.pkg.getName() : layout.pkg.getName() + " " + (i + 1) + "/" + layout.diagrams.size();
+            String guid = getGuid(null, "diagram" + (i + 1), exportedPackage.guid);
+            String diagramId = getId();
+            this.writer.write("t_diagram", getTDiagram(guid, diagramId, name, exportedPackage.guid));
+            for (DiagramLayout.Placement placement : layout.diagrams.get(i)) {
+                ExportedElement exportedClass = lookup(layout.classes.get(placement.node));
+                this.writer.write("t_diagramobjects", getTDiagramObjectRow(guid, diagramId, exportedClass.guid,
+                        "" + placement.top, "" + placement.left, "" + placement.right, "" + placement.bottom));
+            }
+            this.stage.created();
+        }
+    }
+
+    /**
+     * Writes the object row of a class, with the GUID and id of the last export if it was exported before
+     */
+    private ExportedElement exportClass(Class cls, ExportedElement exportedPackage) throws IOException {
+        String key = "class " + getKey(cls);
+        ExportedElement previous = getPrevious(cls, key);
+        String classGuid = previous != null ? previous.guid : getGuid(cls, "");
+        String classId = previous != null ? previous.id : getId();
+        ExportedElement exported = writeClass(cls.getName(), classGuid, classId, exportedPackage, getNote(cls), key);
+        this.registry.put(cls, exported);
+        return exported;
+    }
+
+    private ExportedElement writeClass(String name, String guid, String classId, ExportedElement exportedPackage, String note, String key) throws IOException {
+        this.writer.write("t_object", getTClassObject(name, guid, classId, exportedPackage.guid, note));
+        this.stage.created();
+        return new ExportedElement(guid, classId, exportedPackage, key);
+    }
+
+    private void exportAttribute(Property attr, ExportedElement exportedClass) throws IOException {
+        String key = "attribute " + exportedClass.guid + " " + getKey(attr);
+        ExportedElement previous = getPrevious(attr, key);
+        String attrNote = getNote(attr);
+        String attrGuid = previous != null ? previous.guid : getGuid(attr, exportedClass.guid);
+        String attrId = previous != null ? previous.id : getId();
+        this.registry.put(attr, writeAttribute(attr.getName(), attrGuid, attrId, exportedClass, attrNote, attr.getType().getName(), key));
+    }
+
+    private ExportedElement writeAttribute(String name, String guid, String attrId, ExportedElement exportedClass, String note, String type, String key) throws IOException {
+        this.writer.write("t_attribute", getTAttributeRow(name, guid, attrId, exportedClass.guid, note, type));
+        this.stage.created();
+        return new ExportedElement(guid, attrId, exportedClass, key);
+    }
+
+    private void exportGeneralization(Generalization generalization) throws IOException {
+        ExportedElement child = lookup(generalization.getSpecific());
+        ExportedElement parent = lookup(generalization.getGeneral());
+        String key = "generalization " + child.guid + " " + parent.guid;
+        ExportedElement previous = getPrevious(generalization, key);
+        String connectorId = previous != null ? previous.id : getId();
+        this.registry.put(generalization, writeConnector("Generalization", connectorId, child, parent, "", key));
+    }
+
+    private void exportAssociation(Association assoc) throws IOException {
+        ExportedElement source = lookup(assoc.getMemberEnds().get(1).getType());
+        ExportedElement target = lookup(assoc.getMemberEnds().get(0).getType());
+        String key = "association " + getKey(assoc) + " " + source.guid + " " + target.guid;
+        ExportedElement previous = getPrevious(assoc, key);
+        String connectorId = previous != null ? previous.id : getId();
+        this.registry.put(assoc, writeConnector("Association", connectorId, source, target, assoc.getMemberEnds().get(0).getName(), key));
+    }
+
+    private void exportConnector(Element connector) throws IOException {
+        if (connector instanceof Generalization) {
+            exportGeneralization((Generalization) connector);
+        } else if (connector instanceof Association) {
+            exportAssociation((Association) connector);
+        }
+    }
+
+    /**
+     * @return the identifiers of an element exported by this exporter, or assigned before a partitioned export
+     */
+    private ExportedElement lookup(Element element) {
+        ExportedElement exported = this.registry.get(element);
+        return exported != null ? exported : this.shared.get(element);
+    }
+
+    /**
+     * @return the identifiers the element was exported with before, or those of the removed element with the same
+     * key that it replaces in an export of changes
+     */
+    private ExportedElement getPrevious(Element element, String key) {
+        ExportedElement previous = lookup(element);
+        return previous != null ? previous : this.replaced.remove(key);
+    }
+
+    /**
+     * @return the source IRI of an element, or its path if it has no IRI
+     */
+    private String getKey(Element element) {
+        IRI iri = this.sourceIris.get(element);
+        return iri != null ? iri.toString() : getPath(element);
+    }
+
+    private ExportedElement writeConnector(String type, String connectorId, ExportedElement source, ExportedElement target, String destRole, String key) throws IOException {
+        this.writer.write("t_connector", getTConnectorRow(connectorId, type, source.guid, target.guid, destRole, source.id, target.id));
+        this.stage.created();
+        return new ExportedElement(null, connectorId, null, key);
+    }
+
+    private String getNote(Element element) {
+        IRI iri = this.sourceIris.get(element);
+        return iri != null ? this.notes.computeIfAbsent(iri, i -> renderNote(element)) : renderNote(element);
+    }
+
+    private String renderNote(Element element) {
+        if (this.annotations != null) {
+            List<String> annotations = this.annotations.apply(element);
+            if (!annotations.isEmpty()) return getNote(annotations);
+        }
+        StringBuilder note = new StringBuilder();
+        for (Comment comment : element.getOwnedComments()) {
+            note.append(comment.getBody()).append("\n\n");
+        }
+        return note.toString();
+    }
+
+    private static String getNote(List<String> annotations) {
+        StringBuilder note = new StringBuilder();
+        for (String annotation : annotations) {
+            note.append(annotation).append("\n\n");
+        }
+        return note.toString();
+    }
+
+    /**
+     * Writes the rows of the elements an incremental conversion changed to name.delta with the extension of the
+     * output format. Elements that were exported before keep their GUID and id, as do the elements that replace a
+     * removed element for the same entity between the same classes. The removed elements that are not replaced are
+     * listed in name.deleted.xml, by GUID or, for connectors, by connector id, as EA has no table for deletions.
+     * Requires a full export of the model by this exporter first.
+     */
+    public void exportChanges(String name, ModelChanges changes) throws ParserConfigurationException, TransformerException, IOException {
+        if (this.registry == null) throw new IllegalStateException("Export the full model before exporting changes");
+        if (this.format == OutputFormat.QEA) throw new IllegalStateException("Changes cannot be exported to a project file");
+        File file = getFile(name, ".delta");
+        this.writer = createWriter(file);
+        this.notes = new ConcurrentHashMap<>();
+        Package rootPackage = this.model.getNestedPackages().get(0);
+        String rootGuid = this.registry.get(rootPackage).guid;
+        this.stage = this.metrics.start("export.changes");
+        Map<Element, ExportedElement> removed = new IdentityHashMap<>();
+        this.replaced = new HashMap<>();
+        for (Element e : changes.getRemoved()) {
+            ExportedElement exported = this.registry.remove(e);
+            if (exported == null) continue;
+            removed.put(e, exported);
+            if (exported.key != null) this.replaced.put(exported.key, exported);
+        }
+        try {
+            try {
+                writeChanges(rootPackage.getName(), rootGuid, changes);
+            } catch (IOException | TransformerException | RuntimeException e) {
+                this.writer.abort();
+                throw e;
+            }
+            writeDeleted(new File(name + ".deleted.xml"), rootPackage.getName(), rootGuid, changes.getRemoved(), removed);
+            this.stage.stop();
+        } finally {
+            this.replaced = Collections.emptyMap();
+            this.stage = StageMetrics.detached();
+        }
+    }
+
+    /**
+     * Writes the removed elements that were not replaced by an element that reuses their identifiers
+     */
+    private void writeDeleted(File file, String name, String guid, List<Element> removed, Map<Element, ExportedElement> exported) throws ParserConfigurationException, TransformerException {
+        org.w3c.dom.Document dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        org.w3c.dom.Element deleted = dom.createElement("Deleted");
+        deleted.setAttribute("name", name);
+        deleted.setAttribute("guid", guid);
+        dom.appendChild(deleted);
+        for (Element e : removed) {
+            ExportedElement element = exported.get(e);
+            if (element == null || element.key != null && this.replaced.get(element.key) != element) continue;
+            org.w3c.dom.Element row = dom.createElement("Row");
+            if (e instanceof Class) {
+                row.setAttribute("table", "t_object");
+                row.setAttribute("ea_guid", element.guid);
+            } else if (e instanceof Property) {
+                row.setAttribute("table", "t_attribute");
+                row.setAttribute("ea_guid", element.guid);
+            } else {
+                row.setAttribute("table", "t_connector");
+                row.setAttribute("Connector_ID", element.id);
+            }
+            deleted.appendChild(row);
+        }
+        transform(dom, file);
+    }
+
+    /**
+     * Writes the rows of the added and updated elements to the opened writer
+     */
+    private void writeChanges(String rootName, String rootGuid, ModelChanges changes) throws IOException, TransformerException {
+        this.writer.open(rootName, rootGuid, DELTA_TABLES);
+        List<Element> changed = new ArrayList<>(changes.getUpdated());
+        changed.addAll(changes.getAdded());
+        // classes first, the attributes and connectors refer to them
+        for (Element e : changed) {
+            if (e instanceof Class) {
+                ExportedElement exportedPackage = this.registry.get(((Class) e).getPackage());
+                if (exportedPackage != null) {
+                    exportClass((Class) e, exportedPackage);
+                } else {
+                    this.stage.skipped();
+                }
+            }
+        }
+        for (Element e : changed) {
+            if (e instanceof Property && ((Property) e).getAssociation() == null) {
+                ExportedElement exportedClass = this.registry.get(((Property) e).getClass_());
+                if (exportedClass != null) exportAttribute((Property) e, exportedClass);
+            } else {
+                exportConnector(e);
+            }
+        }
+        this.writer.close();
+    }
+
+    /**
+     * Serializes the export
+     */
+    void close() throws IOException, TransformerException {
+        this.writer.close();
+    }
+
+    private ExportedElement createRootPackage(Package rootPackage) throws IOException {
+        ExportedElement exported = writeRootPackage(rootPackage.getName(), getGuid(rootPackage, ""));
+        this.registry.put(rootPackage, exported);
+        return exported;
+    }
+
+    private ExportedElement writeRootPackage(String name, String guid) throws IOException {
+        this.writer.open(name, guid, TABLES);
 
         // root package
-        this.currentPackage = getTPackageRow(name, guid, "0", false, "");
-        this.tPackage.appendChild(this.currentPackage);
-        this.tObject.appendChild(getTPackageObject(name, guid, getAttributeValue(this.currentPackage, "Package_ID"), true, "", getAttributeValue(this.currentPackage, "Package_ID")));
-
-        this.elementList.put(this.inputPath, this.currentPackage);
-    }
-
-    private void createPackage(String name, String parentPath) {
-        String guid = getGuid();
-        this.currentPackage = getTPackageRow(name, guid, getAttributeValue(this.elementList.get(parentPath), "Package_ID"), true, getAttributeValue(this.elementList.get(parentPath), "ea_guid"));
-        this.tPackage.appendChild(this.currentPackage);
-        this.tObject.appendChild(getTPackageObject(name, guid, getAttributeValue(this.elementList.get(parentPath), "Package_ID"), false, getAttributeValue(this.elementList.get(parentPath), "ea_guid"), getAttributeValue(this.currentPackage, "Package_ID")));
-        this.elementList.put(this.inputPath + name, this.currentPackage);
-    }
-
-    private void setupTables() {
-        this.tPackage = getTable("t_package");
-        this.root.appendChild(this.tPackage);
-        this.tObject = getTable("t_object");
-        this.root.appendChild(this.tObject);
-        this.tAttribute = getTable("t_attribute");
-        this.root.appendChild(this.tAttribute);
-        this.tConnector = getTable("t_connector");
-        this.root.appendChild(this.tConnector);
-        this.tDiagram = getTable("t_diagram");
-        this.root.appendChild(this.tDiagram);
-        this.tDiagramObjects = getTable("t_diagramobjects");
-        this.root.appendChild(tDiagramObjects);
-    }
-
-    private Element getTDiagram(String guid, String diagramId, String name, String parentGuid) {
-        Element row = this.dom.createElement("Row");
-        row.appendChild(getColumn("ea_guid", guid));
-        row.appendChild(getColumn("AttPub", "TRUE"));
-        row.appendChild(getColumn("Diagram_ID", diagramId));
-        row.appendChild(getColumn("Name", name));
-        row.appendChild(getColumn("Diagram_Type", "Logical"));
-        Element extension = this.dom.createElement("Extension");
-        extension.setAttribute("Package_ID", parentGuid);
-        row.appendChild(extension);
+        String packageId = getId();
+        this.writer.write("t_package", getTPackageRow(name, guid, packageId, "0", false, ""));
+        this.writer.write("t_object", getTPackageObject(name, guid, getId(), packageId, true, "", packageId));
+
+        this.stage.created();
+        return new ExportedElement(guid, packageId, null);
+    }
+
+    private ExportedElement createPackage(Package p, ExportedElement parent) throws IOException {
+        ExportedElement exported = writePackage(p.getName(), getGuid(p, ""), parent);
+        this.registry.put(p, exported);
+        return exported;
+    }
+
+    private ExportedElement writePackage(String name, String guid, ExportedElement parent) throws IOException {
+        String packageId = getId();
+        this.writer.write("t_package", getTPackageRow(name, guid, packageId, parent.id, true, parent.guid));
+        this.writer.write("t_object", getTPackageObject(name, guid, getId(), parent.id, false, parent.guid, packageId));
+
+        this.stage.created();
+        return new ExportedElement(guid, packageId, parent);
+    }
+
+    private TableRow getTDiagram(String guid, String diagramId, String name, String parentGuid) {
+        TableRow row = new TableRow();
+        row.column("ea_guid", guid);
+        row.column("AttPub", "TRUE");
+        row.column("Diagram_ID", diagramId);
+        row.column("Name", name);
+        row.column("Diagram_Type", "Logical");
+        row.extension("Package_ID", parentGuid);
         return row;
     }
 
-    private Element getTDiagramObjectRow(String parentGuid, String diagramId, String objectGuid, String top, String left, String right, String bottom) {
-        Element row = this.dom.createElement("Row");
-        row.appendChild(getColumn("RectTop", top));
-        row.appendChild(getColumn("RectLeft", left));
-        row.appendChild(getColumn("RectRight", right));
-        row.appendChild(getColumn("RectBottom", bottom));
-        Element extension = this.dom.createElement("Extension");
-        extension.setAttribute("Diagram_ID", parentGuid);
-        extension.setAttribute("Object_ID", objectGuid);
-        row.appendChild(extension);
+    private TableRow getTDiagramObjectRow(String parentGuid, String diagramId, String objectGuid, String top, String left, String right, String bottom) {
+        TableRow row = new TableRow();
+        row.column("RectTop", top);
+        row.column("RectLeft", left);
+        row.column("RectRight", right);
+        row.column("RectBottom", bottom);
+        row.extension("Diagram_ID", parentGuid);
+        row.extension("Object_ID", objectGuid);
         return row;
     }
 
-    private Element getTConnectorRow(String type, String startGuid, String endGuid, String destRole, String startId, String endId) {
-        Element row = this.dom.createElement("Row");
-        row.appendChild(getColumn("Connector_ID", getId()));
-        row.appendChild(getColumn("Connector_Type", type));
-        row.appendChild(getColumn("SourceIsAggregate", "0"));
-        row.appendChild(getColumn("SourceIsOrdered", "0"));
-        row.appendChild(getColumn("DestIsAggregate", "0"));
-        row.appendChild(getColumn("DestIsOrdered", "0"));
-        row.appendChild(getColumn("Start_Object_ID", startId));
-        row.appendChild(getColumn("End_Object_ID", endId));
-        row.appendChild(getColumn("Start_Edge", "0"));
-        row.appendChild(getColumn("End_Edge", "0"));
-        row.appendChild(getColumn("PtStartX", "0"));
-        row.appendChild(getColumn("PtStartY", "0"));
-        row.appendChild(getColumn("PtEndX", "0"));
-        row.appendChild(getColumn("PtEndY", "0"));
-        row.appendChild(getColumn("SeqNo", "0"));
-        row.appendChild(getColumn("HeadStyle", "0"));
-        row.appendChild(getColumn("LineStyle", "0"));
-        row.appendChild(getColumn("RouteStyle", "0"));
-        row.appendChild(getColumn("IsBold", "0"));
-        row.appendChild(getColumn("LineColor", "0"));
-        row.appendChild(getColumn("DiagramID", "0"));
-        row.appendChild(getColumn("SourceIsNavigable", "FALSE"));
-        row.appendChild(getColumn("DestIsNavigable", "FALSE"));
-        row.appendChild(getColumn("IsRoot", "FALSE"));
-        row.appendChild(getColumn("IsLeaf", "FALSE"));
-        row.appendChild(getColumn("IsSpec", "FALSE"));
-        row.appendChild(getColumn("IsSignal", "FALSE"));
-        row.appendChild(getColumn("IsStimulus", "FALSE"));
-        row.appendChild(getColumn("Target2", "0"));
+    private TableRow getTConnectorRow(String connectorId, String type, String startGuid, String endGuid, String destRole, String startId, String endId) {
+        TableRow row = new TableRow();
+        row.column("Connector_ID", connectorId);
+        row.column("Connector_Type", type);
+        row.column("SourceIsAggregate", "0");
+        row.column("SourceIsOrdered", "0");
+        row.column("DestIsAggregate", "0");
+        row.column("DestIsOrdered", "0");
+        row.column("Start_Object_ID", startId);
+        row.column("End_Object_ID", endId);
+        row.column("Start_Edge", "0");
+        row.column("End_Edge", "0");
+        row.column("PtStartX", "0");
+        row.column("PtStartY", "0");
+        row.column("PtEndX", "0");
+        row.column("PtEndY", "0");
+        row.column("SeqNo", "0");
+        row.column("HeadStyle", "0");
+        row.column("LineStyle", "0");
+        row.column("RouteStyle", "0");
+        row.column("IsBold", "0");
+        row.column("LineColor", "0");
+        row.column("DiagramID", "0");
+        row.column("SourceIsNavigable", "FALSE");
+        row.column("DestIsNavigable", "FALSE");
+        row.column("IsRoot", "FALSE");
+        row.column("IsLeaf", "FALSE");
+        row.column("IsSpec", "FALSE");
+        row.column("IsSignal", "FALSE");
+        row.column("IsStimulus", "FALSE");
+        row.column("Target2", "0");
         if (!destRole.isEmpty()) {
-            row.appendChild(getColumn("DestRole", destRole));
-            row.appendChild(getColumn("Direction", "Source -> Destination"));
+            row.column("DestRole", destRole);
+            row.column("Direction", "Source -> Destination");
         }
-        Element extension = this.dom.createElement("Extension");
-        extension.setAttribute("Start_Object_ID", startGuid);
-        extension.setAttribute("End_Object_ID", endGuid);
-        row.appendChild(extension);
+        row.extension("Start_Object_ID", startGuid);
+        row.extension("End_Object_ID", endGuid);
         return row;
     }
 
-    private Element getTAttributeRow(String name, String guid, String parentGuid, String note, String type) {
-        Element row = this.dom.createElement("Row");
-        row.appendChild(getColumn("Object_ID", getId()));
-        row.appendChild(getColumn("Name", name));
-        row.appendChild(getColumn("Scope", "Public"));
-        row.appendChild(getColumn("IsStatic", "0"));
-        row.appendChild(getColumn("IsCollection", "0"));
-        row.appendChild(getColumn("IsOrdered", "0"));
-        row.appendChild(getColumn("AllowDuplicates", "0"));
-        row.appendChild(getColumn("LowerBound", "0"));
-        row.appendChild(getColumn("UpperBound", "1"));
+    private TableRow getTAttributeRow(String name, String guid, String attributeId, String parentGuid, String note, String type) {
+        TableRow row = new TableRow();
+        row.column("Object_ID", attributeId);
+        row.column("Name", name);
+        row.column("Scope", "Public");
+        row.column("IsStatic", "0");
+        row.column("IsCollection", "0");
+        row.column("IsOrdered", "0");
+        row.column("AllowDuplicates", "0");
+        row.column("LowerBound", "0");
+        row.column("UpperBound", "1");
         if (!note.isEmpty())
-            row.appendChild(getColumn("Notes", note));
-        row.appendChild(getColumn("Pos", "0"));
-        row.appendChild(getColumn("Length", "0"));
-        row.appendChild(getColumn("Precision", "0"));
-        row.appendChild(getColumn("Scale", "0"));
-        row.appendChild(getColumn("Const", "0"));
-        Element extension = this.dom.createElement("Extension");
-        row.appendChild(getColumn("Type", type));
-        row.appendChild(getColumn("ea_guid", guid));
-        extension.setAttribute("Object_ID", parentGuid);
-        row.appendChild(extension);
+            row.column("Notes", note);
+        row.column("Pos", "0");
+        row.column("Length", "0");
+        row.column("Precision", "0");
+        row.column("Scale", "0");
+        row.column("Const", "0");
+        row.column("Type", type);
+        row.column("ea_guid", guid);
+        row.extension("Object_ID", parentGuid);
         return row;
     }
 
-    private Element getTPackageRow(String name, String guid, String parentId, boolean hasParent, String parentGuid) {
-        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        LocalDateTime now = LocalDateTime.now();
-
-        Element row = this.dom.createElement("Row");
-        row.appendChild(getColumn("Package_ID", getId()));
-        row.appendChild(getColumn("Name", name));
-        row.appendChild(getColumn("Parent_ID", parentId));
+    private TableRow getTPackageRow(String name, String guid, String packageId, String parentId, boolean hasParent, String parentGuid) {
+        TableRow row = new TableRow();
+        row.column("Package_ID", packageId);
+        row.column("Name", name);
+        row.column("Parent_ID", parentId);
 
-        row.appendChild(getColumn("CreatedDate", dtf.format(now)));
-        row.appendChild(getColumn("ModifiedDate", dtf.format(now)));
+        row.column("CreatedDate", this.timestamp);
+        row.column("ModifiedDate", this.timestamp);
 
-        row.appendChild(getColumn("ea_guid", guid));
+        row.column("ea_guid", guid);
 
-        row.appendChild(getColumn("IsControlled", "FALSE"));
-        row.appendChild(getColumn("LastLoadDate", dtf.format(now)));
-        row.appendChild(getColumn("LastSaveDate", dtf.format(now)));
-        row.appendChild(getColumn("Protected", "FALSE"));
-        row.appendChild(getColumn("UseDTD", "FALSE"));
-        row.appendChild(getColumn("LogXML", "FALSE"));
-        row.appendChild(getColumn("TPos", "0"));
-        row.appendChild(getColumn("BatchSave", "0"));
-        row.appendChild(getColumn("BatchLoad", "0"));
+        row.column("IsControlled", "FALSE");
+        row.column("LastLoadDate", this.timestamp);
+        row.column("LastSaveDate", this.timestamp);
+        row.column("Protected", "FALSE");
+        row.column("UseDTD", "FALSE");
+        row.column("LogXML", "FALSE");
+        row.column("TPos", "0");
+        row.column("BatchSave", "0");
+        row.column("BatchLoad", "0");
 
-        Element extension = this.dom.createElement("Extension");
+        row.extension();
         if (hasParent)
-            extension.setAttribute("Parent_ID", parentGuid);
-        row.appendChild(extension);
+            row.extension("Parent_ID", parentGuid);
         return row;
     }
 
-    private Element getTClassObject(String name, String guid, String parentGuid, String note) {
-        Element classObject = getTObjectRow(name, guid, "Class");
-        Element extension = this.dom.createElement("Extension");
+    private TableRow getTClassObject(String name, String guid, String objectId, String parentGuid, String note) {
+        TableRow classObject = getTObjectRow(name, guid, objectId, "Class");
         if (!note.isEmpty())
-            classObject.appendChild(getColumn("note", note));
-        extension.setAttribute("Package_ID", parentGuid);
-        classObject.appendChild(extension);
+            classObject.column("note", note);
+        classObject.extension("Package_ID", parentGuid);
         return classObject;
     }
 
-    private Element getTPackageObject(String name, String guid, String packageId, boolean isRoot, String parentGuid, String pdata1) {
-        Element packageObject = getTObjectRow(name, guid, "Package");
-        packageObject.appendChild(getColumn("Package_ID", packageId));
-        packageObject.appendChild(getColumn("PDATA1", pdata1));
-        packageObject.appendChild(getColumn("Diagram_ID", "0"));
-        packageObject.appendChild(getColumn("Author", "OwlToUml"));
-        packageObject.appendChild(getColumn("Version", "1.0"));
-        packageObject.appendChild(getColumn("Complexity", "1"));
-        packageObject.appendChild(getColumn("Status", "proposed"));
-        packageObject.appendChild(getColumn("Abstract", "0"));
-        packageObject.appendChild(getColumn("GenType", "Java"));
-        packageObject.appendChild(getColumn("Phase", "1.0"));
-        packageObject.appendChild(getColumn("Scope", "Public"));
-        Element extension = this.dom.createElement("Extension");
+    private TableRow getTPackageObject(String name, String guid, String objectId, String packageId, boolean isRoot, String parentGuid, String pdata1) {
+        TableRow packageObject = getTObjectRow(name, guid, objectId, "Package");
+        packageObject.column("Package_ID", packageId);
+        packageObject.column("PDATA1", pdata1);
+        packageObject.column("Diagram_ID", "0");
+        packageObject.column("Author", "OwlToUml");
+        packageObject.column("Version", "1.0");
+        packageObject.column("Complexity", "1");
+        packageObject.column("Status", "proposed");
+        packageObject.column("Abstract", "0");
+        packageObject.column("GenType", "Java");
+        packageObject.column("Phase", "1.0");
+        packageObject.column("Scope", "Public");
         if (!isRoot)
-            extension.setAttribute("Package_ID", parentGuid);
-        extension.setAttribute("PDATA1", guid);
-        packageObject.appendChild(extension);
+            packageObject.extension("Package_ID", parentGuid);
+        packageObject.extension("PDATA1", guid);
         return packageObject;
     }
 
-    private Element getTObjectRow(String name, String guid, String type) {
-        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        LocalDateTime now = LocalDateTime.now();
-        Element row = this.dom.createElement("Row");
-        row.appendChild(getColumn("name", name));
-        row.appendChild(getColumn("ea_guid", guid));
-        row.appendChild(getColumn("Object_ID", getId()));
-        row.appendChild(getColumn("Object_type", type));
-        row.appendChild(getColumn("Classifier", "0"));
-        row.appendChild(getColumn("ParentID", "0"));
-        row.appendChild(getColumn("IsRoot", "FALSE"));
-        row.appendChild(getColumn("IsLeaf", "FALSE"));
-        row.appendChild(getColumn("IsSpec", "FALSE"));
-        row.appendChild(getColumn("IsActive", "FALSE"));
-        row.appendChild(getColumn("Tagged", "0"));
-        row.appendChild(getColumn("TPos", "0"));
-        row.appendChild(getColumn("Effort", "0"));
-        row.appendChild(getColumn("Backcolor", "-1"));
-        row.appendChild(getColumn("BorderStyle", "0"));
-        row.appendChild(getColumn("BorderWidth", "-1"));
-        row.appendChild(getColumn("Fontcolor", "-1"));
-        row.appendChild(getColumn("Bordercolor", "-1"));
-        row.appendChild(getColumn("CreatedDate", dtf.format(now)));
-        row.appendChild(getColumn("ModifiedDate", dtf.format(now)));
-        row.appendChild(getColumn("NType", "0"));
+    private TableRow getTObjectRow(String name, String guid, String objectId, String type) {
+        TableRow row = new TableRow();
+        row.column("name", name);
+        row.column("ea_guid", guid);
+        row.column("Object_ID", objectId);
+        row.column("Object_type", type);
+        row.column("Classifier", "0");
+        row.column("ParentID", "0");
+        row.column("IsRoot", "FALSE");
+        row.column("IsLeaf", "FALSE");
+        row.column("IsSpec", "FALSE");
+        row.column("IsActive", "FALSE");
+        row.column("Tagged", "0");
+        row.column("TPos", "0");
+        row.column("Effort", "0");
+        row.column("Backcolor", "-1");
+        row.column("BorderStyle", "0");
+        row.column("BorderWidth", "-1");
+        row.column("Fontcolor", "-1");
+        row.column("Bordercolor", "-1");
+        row.column("CreatedDate", this.timestamp);
+        row.column("ModifiedDate", this.timestamp);
+        row.column("NType", "0");
         return row;
     }
 
-    private Element getColumn(String name, String value) {
-        Element column = this.dom.createElement("Column");
-        column.setAttribute("name", name);
-        column.setAttribute("value", value);
-        return column;
+    /**
+     * @return a random GUID, or in deterministic mode a name-based GUID of the source IRI, or the path of the
+     * element if it has no IRI, within the given scope
+     */
+    private String getGuid(Element element, String scope) {
+        if (!this.deterministic) return getRandomGuid();
+        return getGuid(this.sourceIris.get(element), getPath(element), scope);
     }
 
-    private Element getTable(String name) {
-        Element table = this.dom.createElement("Table");
-        table.setAttribute("name", name);
-        return table;
+    /**
+     * @return a random GUID, or in deterministic mode a name-based GUID of the IRI, or the path if there is no IRI,
+     * within the given scope
+     */
+    private String getGuid(IRI iri, String path, String scope) {
+        if (!this.deterministic) return getRandomGuid();
+        return getNameGuid(scope + (iri != null ? iri.toString() : path));
     }
 
-    private String getAttributeValue(Element element, String name) {
-        for (Node node : iterable(element.getChildNodes())) {
-            if (node.getAttributes().getNamedItem("name").getNodeValue().equals(name))
-                return node.getAttributes().getNamedItem("value").getNodeValue();
-        }
-        return "";
+    /**
+     * @return the names of the owners of an element from the root package down and of the element itself, the
+     * model is left out. Unnamed elements are named by their index among the elements of their owner.
+     */
+    private static String getPath(Element element) {
+        Element owner = element.getOwner();
+        if (owner == null) return "";
+        String name = element instanceof NamedElement ? ((NamedElement) element).getName() : null;
+        if (name == null || name.isEmpty()) name = "#" + owner.getOwnedElements().indexOf(element);
+        return getPath(getPath(owner), name);
+    }
+
+    /**
+     * @return the path of an element with the given name in the owner with the given path, shared by exports of a
+     * model and direct exports so both derive the same GUIDs
+     */
+    private static String getPath(String ownerPath, String name) {
+        return ownerPath.isEmpty() ? name : ownerPath + "::" + name;
     }
 
-    private String getGuid() {
-        return "{" + UUID.randomUUID() + "}";
+    private static String getRandomGuid() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long msb = (random.nextLong() & 0xFFFFFFFFFFFF0FFFL) | 0x0000000000004000L;
+        long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return "{" + new UUID(msb, lsb) + "}";
+    }
+
+    private String getNameGuid(String seed) {
+        Integer count = this.seeds.merge(seed, 1, Integer::sum);
+        if (count > 1) seed += "#" + count;
+        return "{" + UUID.nameUUIDFromBytes(seed.getBytes(StandardCharsets.UTF_8)) + "}";
     }
 
     private String getId() {
@@ -364,20 +1030,133 @@ public class EnterpriseArchitectNativeExporter {
         return "" + this.id;
     }
 
-    public static Iterable<Node> iterable(final NodeList nodeList) {
-        return () -> new Iterator<Node>() {
-            private int index = 0;
-            @Override
-            public boolean hasNext() {
-                return index < nodeList.getLength();
+    /**
+     * Diagrams of the classes of a package
+     */
+    private static class PackageLayout {
+        private final Package pkg;
+        private final List<Class> classes;
+        private final List<List<DiagramLayout.Placement>> diagrams;
+
+        private PackageLayout(Package pkg, List<Class> classes, List<List<DiagramLayout.Placement>> diagrams) {
+            this.pkg = pkg;
+            this.classes = classes;
+            this.diagrams = diagrams;
+        }
+    }
+
+    /**
+     * Package of a partitioned export, with the classes and connectors written to its file
+     */
+    private static class Partition {
+        private final Package pkg;
+        private final File file;
+        private final String guid;
+        private final List<Class> classes = new ArrayList<>();
+        private final List<Element> connectors = new ArrayList<>();
+        private int rows;
+        private int firstId;
+
+        private Partition(Package pkg, File file, String guid) {
+            this.pkg = pkg;
+            this.file = file;
+            this.guid = guid;
+        }
+    }
+
+    /**
+     * Writes the rows of the entities of a conversion as they are passed, classes are looked up by IRI instead of
+     * by UML element
+     */
+    private class RowSink implements ConversionSink {
+        private final Map<String, ExportedElement> packages = new HashMap<>();
+        private final Map<IRI, ExportedElement> classes = new HashMap<>();
+        private String rootName;
+        private ExportedElement root;
+
+        @Override
+        public void start(String rootName) {
+            LOG.info("Start exporting {} directly", rootName);
+            stage = metrics.start("export.rows");
+            this.rootName = rootName;
+            try {
+                this.root = writeRootPackage(rootName, getGuid(null, getPath("", rootName), ""));
+            } catch (IOException e) {
+                throw failed(e);
             }
-            @Override
-            public Node next() {
-                if (!hasNext())
-                    throw new NoSuchElementException();
-                return nodeList.item(index++);
+        }
+
+        @Override
+        public void addPackage(String name, IRI namespace, List<String> annotations) {
+            try {
+                this.packages.put(name, writePackage(name, getGuid(namespace, getPath(getPath("", this.rootName), name), ""), this.root));
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        public void addClass(IRI iri, String packageName, String name, List<String> annotations) {
+            try {
+                String guid = getGuid(iri, null, "");
+                this.classes.put(iri, writeClass(name, guid, getId(), this.packages.get(packageName), getNote(annotations), null));
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        public void addAttribute(IRI iri, IRI owner, String name, String type, List<String> annotations) {
+            ExportedElement exportedClass = this.classes.get(owner);
+            try {
+                writeAttribute(name, getGuid(iri, null, exportedClass.guid), getId(), exportedClass, getNote(annotations), type, null);
+            } catch (IOException e) {
+                throw failed(e);
             }
-        };
+        }
+
+        @Override
+        public void addAssociation(IRI iri, IRI source, IRI target, String name, List<String> annotations) {
+            try {
+                writeConnector("Association", getId(), this.classes.get(source), this.classes.get(target), name, null);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        public void addGeneralization(IRI specific, IRI general) {
+            try {
+                writeConnector("Generalization", getId(), this.classes.get(specific), this.classes.get(general), "", null);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        public void finish() {
+            stage.stop();
+            stage = metrics.start("export.serialize");
+            try {
+                close();
+            } catch (IOException e) {
+                throw failed(e);
+            } catch (TransformerException e) {
+                writer.abort();
+                throw new IllegalStateException("Could not serialize the export", e);
+            }
+            stage.stop();
+            stage = StageMetrics.detached();
+            LOG.info("Finished exporting {} directly", this.rootName);
+        }
+
+        /**
+         * Aborts the export after a row could not be written
+         */
+        private UncheckedIOException failed(IOException e) {
+            writer.abort();
+            return new UncheckedIOException(e);
+        }
     }
 
 }
@@ -0,0 +1,24 @@
+package com.alliander.owltouml.exporters;
+
+/**
+ * Identifiers assigned to an exported package or object
+ */
+class ExportedElement {
+
+    final String guid;
+    final String id;
+    final ExportedElement owner;
+    // identifies the row across incremental conversions, which replace the UML elements of changed entities
+    final String key;
+
+    ExportedElement(String guid, String id, ExportedElement owner) {
+        this(guid, id, owner, null);
+    }
+
+    ExportedElement(String guid, String id, ExportedElement owner, String key) {
+        this.guid = guid;
+        this.id = id;
+        this.owner = owner;
+        this.key = key;
+    }
+}
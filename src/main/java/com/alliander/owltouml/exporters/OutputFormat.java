@@ -0,0 +1,84 @@
+package com.alliander.owltouml.exporters;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * File format of an export, plain XML, XML compressed with gzip or in a zip archive, or an EA project file
+ */
+public enum OutputFormat {
+    XML(".xml"),
+    GZIP(".xml.gz"),
+    ZIP(".zip"),
+    QEA(".qea");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return the extension of the files of this format, including the dot
+     */
+    public String getExtension() {
+        return this.extension;
+    }
+
+    /**
+     * Opens a file of this format, a zip archive gets a single entry with the name of the file and the extension .xml
+     *
+     * @param background compress on a background thread, while the caller produces the next bytes
+     */
+    OutputStream open(File file, boolean background) throws IOException {
+        if (this == QEA) throw new IllegalStateException("A project file is not written as a stream");
+        String name = file.getName();
+        OutputStream out = compress(new BufferedOutputStream(Files.newOutputStream(file.toPath()), BUFFER_SIZE),
+                name.substring(0, name.length() - this.extension.length()));
+        return background ? new BackgroundOutputStream(out) : out;
+    }
+
+    /**
+     * Opens a stream of this format on a stream that is not closed, closing the returned stream only finishes the
+     * compressed data. A zip archive gets a single entry with the given name and the extension .xml.
+     *
+     * @param background compress on a background thread, while the caller produces the next bytes
+     */
+    OutputStream open(OutputStream target, String name, boolean background) throws IOException {
+        if (this == QEA) throw new IllegalStateException("A project file is not written as a stream");
+        OutputStream out = compress(new FilterOutputStream(target) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                this.out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }, name);
+        return background ? new BackgroundOutputStream(out) : out;
+    }
+
+    private OutputStream compress(OutputStream out, String name) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            case ZIP:
+                ZipOutputStream zip = new ZipOutputStream(out);
+                zip.putNextEntry(new ZipEntry(name + XML.extension));
+                return zip;
+            default:
+                return out;
+        }
+    }
+}
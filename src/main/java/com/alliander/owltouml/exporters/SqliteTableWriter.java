@@ -0,0 +1,231 @@
+package com.alliander.owltouml.exporters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inserts the rows straight into an EA project file (.qea), which is a SQLite database. The file starts as a copy of
+ * an empty project, so it has the complete EA schema. All rows are inserted in one transaction, with a batched
+ * prepared statement for every table and set of columns.
+ * <p>
+ * The ids of the export are moved past the ids already in the project. The GUID references in the extension of a
+ * row, which EA resolves when it imports XML, are resolved here to the ids of the packages, objects and diagrams
+ * written before.
+ */
+class SqliteTableWriter implements TableWriter {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final Map<String, Set<String>> ID_COLUMNS = new HashMap<>();
+    private static final Set<String> PACKAGE_REFERENCES = new HashSet<>(Arrays.asList("Package_ID", "Parent_ID", "PDATA1"));
+    private static final Set<String> OBJECT_REFERENCES = new HashSet<>(Arrays.asList("Object_ID", "Start_Object_ID", "End_Object_ID"));
+
+    static {
+        ID_COLUMNS.put("t_package", new HashSet<>(Arrays.asList("Package_ID", "Parent_ID")));
+        ID_COLUMNS.put("t_object", new HashSet<>(Arrays.asList("Object_ID", "Package_ID", "PDATA1", "Diagram_ID")));
+        ID_COLUMNS.put("t_attribute", new HashSet<>(Collections.singletonList("Object_ID")));
+        ID_COLUMNS.put("t_connector", new HashSet<>(Arrays.asList("Connector_ID", "Start_Object_ID", "End_Object_ID", "DiagramID")));
+        ID_COLUMNS.put("t_diagram", new HashSet<>(Arrays.asList("Diagram_ID", "Package_ID")));
+        ID_COLUMNS.put("t_diagramobjects", new HashSet<>(Arrays.asList("Diagram_ID", "Object_ID")));
+    }
+
+    private final File file;
+    private final Path template;
+    private final Map<String, Integer> packageIds = new HashMap<>();
+    private final Map<String, Integer> objectIds = new HashMap<>();
+    private final Map<String, Integer> diagramIds = new HashMap<>();
+    private final Map<String, Batch> batches = new HashMap<>();
+    private Connection connection;
+    private int offset;
+
+    /**
+     * @param template an empty EA project, copied to the file
+     */
+    SqliteTableWriter(File file, Path template) {
+        this.file = file;
+        this.template = template;
+    }
+
+    @Override
+    public void open(String name, String guid, List<String> tables) throws IOException {
+        for (String table : tables) {
+            if (!ID_COLUMNS.containsKey(table)) throw new IllegalArgumentException("Table " + table + " is not part of an EA project");
+        }
+        Files.copy(this.template, this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try {
+            this.connection = DriverManager.getConnection("jdbc:sqlite:" + this.file.getAbsolutePath());
+            this.connection.setAutoCommit(false);
+            this.offset = Math.max(Math.max(maxId("t_package", "Package_ID"), maxId("t_object", "Object_ID")),
+                    Math.max(Math.max(maxId("t_attribute", "ID"), maxId("t_connector", "Connector_ID")), maxId("t_diagram", "Diagram_ID")));
+        } catch (SQLException e) {
+            IOException failure = new IOException("Could not open project " + this.file, e);
+            release(failure);
+            throw failure;
+        }
+    }
+
+    private int maxId(String table, String column) throws SQLException {
+        try (Statement statement = this.connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table)) {
+            return result.next() ? result.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Inserts a row, a row that cannot be inserted rolls back the transaction and closes the project
+     */
+    @Override
+    public void write(String table, TableRow row) throws IOException {
+        try {
+            add(table, row);
+        } catch (SQLException e) {
+            IOException failure = new IOException("Could not insert into " + table + " of " + this.file, e);
+            release(failure);
+            throw failure;
+        } catch (RuntimeException e) {
+            release(e);
+            throw e;
+        }
+    }
+
+    private void add(String table, TableRow row) throws SQLException {
+        Set<String> idColumns = ID_COLUMNS.get(table);
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < row.size(); i++) {
+            values.put(row.name(i), idColumns.contains(row.name(i)) ? (Object) toId(row.value(i)) : row.value(i));
+        }
+        // in the XML the Object_ID of an attribute holds the id of the attribute, the owner is in the extension
+        if (table.equals("t_attribute")) values.put("ID", values.remove("Object_ID"));
+        if (row.hasExtension()) {
+            for (Map.Entry<String, String> reference : row.getExtension().entrySet()) {
+                Integer id = resolve(table, reference.getKey(), reference.getValue());
+                if (id != null) values.put(reference.getKey(), id);
+            }
+        }
+        // the package id of a package object is stored in a text column
+        if (values.containsKey("PDATA1")) values.put("PDATA1", values.get("PDATA1").toString());
+        Object guid = values.get("ea_guid");
+        if (guid != null) {
+            if (table.equals("t_package")) this.packageIds.put((String) guid, (Integer) values.get("Package_ID"));
+            if (table.equals("t_object")) this.objectIds.put((String) guid, (Integer) values.get("Object_ID"));
+            if (table.equals("t_diagram")) this.diagramIds.put((String) guid, (Integer) values.get("Diagram_ID"));
+        }
+        insert(table, values);
+    }
+
+    private Integer toId(String value) {
+        int id = Integer.parseInt(value);
+        return id == 0 ? 0 : id + this.offset;
+    }
+
+    /**
+     * @return the id of the package, object or diagram with the GUID, or null if it was not written before
+     */
+    private Integer resolve(String table, String column, String guid) {
+        if (column.equals("Diagram_ID") && table.equals("t_diagramobjects")) return this.diagramIds.get(guid);
+        if (PACKAGE_REFERENCES.contains(column)) return this.packageIds.get(guid);
+        if (OBJECT_REFERENCES.contains(column)) return this.objectIds.get(guid);
+        return null;
+    }
+
+    private void insert(String table, Map<String, Object> values) throws SQLException {
+        String key = table + values.keySet();
+        Batch batch = this.batches.get(key);
+        if (batch == null) {
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+            StringBuilder parameters = new StringBuilder();
+            for (String column : values.keySet()) {
+                if (parameters.length() > 0) {
+                    sql.append(", ");
+                    parameters.append(", ");
+                }
+                sql.append('"').append(column).append('"');
+                parameters.append('?');
+            }
+            sql.append(") VALUES (").append(parameters).append(')');
+            batch = new Batch(this.connection.prepareStatement(sql.toString()));
+            this.batches.put(key, batch);
+        }
+        int i = 1;
+        for (Object value : values.values()) batch.statement.setObject(i++, value);
+        batch.statement.addBatch();
+        if (++batch.rows == BATCH_SIZE) batch.execute();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Batch batch : this.batches.values()) batch.execute();
+            this.connection.commit();
+        } catch (SQLException e) {
+            IOException failure = new IOException("Could not write project " + this.file, e);
+            release(failure);
+            throw failure;
+        }
+        IOException failure = new IOException("Could not close project " + this.file);
+        release(failure);
+        if (failure.getSuppressed().length > 0) throw failure;
+    }
+
+    @Override
+    public void abort() {
+        release(new IOException("Aborted export to " + this.file));
+    }
+
+    /**
+     * Rolls back what was not committed and closes the statements and the connection, errors are added to the
+     * given failure
+     */
+    private void release(Exception failure) {
+        if (this.connection == null) return;
+        try {
+            if (!this.connection.getAutoCommit()) this.connection.rollback();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+        for (Batch batch : this.batches.values()) {
+            try {
+                batch.statement.close();
+            } catch (SQLException e) {
+                failure.addSuppressed(e);
+            }
+        }
+        this.batches.clear();
+        try {
+            this.connection.close();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+        this.connection = null;
+    }
+
+    private static class Batch {
+        private final PreparedStatement statement;
+        private int rows;
+
+        private Batch(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        private void execute() throws SQLException {
+            if (this.rows > 0) this.statement.executeBatch();
+            this.rows = 0;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.alliander.owltouml.exporters;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes rows straight to disk as they are produced. Rows of every table are spooled to their own temporary file,
+ * which are concatenated into the target when closed, so memory use does not depend on the size of the model.
+ * The output is formatted exactly like the indented DOM serialization of {@link DomTableWriter}.
+ * The target is either a file, with the spool files next to it, or a stream that is flushed but left open.
+ */
+class StreamingTableWriter implements TableWriter {
+
+    private static final String NL = System.lineSeparator();
+
+    private final File file;
+    private final OutputStream target;
+    private final File spoolDirectory;
+    private String name;
+    private String guid;
+    private Map<String, Spool> spools;
+
+    StreamingTableWriter(File file) {
+        this.file = file;
+        this.target = null;
+        this.spoolDirectory = file.getAbsoluteFile().getParentFile();
+    }
+
+    StreamingTableWriter(OutputStream target, File spoolDirectory) {
+        this.file = null;
+        this.target = target;
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    @Override
+    public void open(String name, String guid, List<String> tables) throws IOException {
+        this.name = name;
+        this.guid = guid;
+        this.spools = new LinkedHashMap<>();
+        try {
+            for (String table : tables) {
+                this.spools.put(table, new Spool(Files.createTempFile(this.spoolDirectory.toPath(), table, ".part")));
+            }
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(String table, TableRow row) throws IOException {
+        Spool spool = this.spools.get(table);
+        spool.rows++;
+        writeRow(spool.writer, row);
+    }
+
+    @Override
+    public void close() throws IOException {
+        OutputStream destination = this.file != null ? Files.newOutputStream(this.file.toPath()) : new Unclosed(this.target);
+        try (OutputStream stream = new BufferedOutputStream(destination, 1 << 16);
+             Writer out = new OutputStreamWriter(stream, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+            out.write(NL);
+            out.write("<Package guid=\"");
+            escape(out, this.guid);
+            out.write("\" name=\"");
+            escape(out, this.name);
+            out.write("\">");
+            out.write(NL);
+            for (Map.Entry<String, Spool> entry : this.spools.entrySet()) {
+                Spool spool = entry.getValue();
+                spool.writer.close();
+                out.write("  <Table name=\"");
+                escape(out, entry.getKey());
+                if (spool.rows == 0) {
+                    out.write("\"/>");
+                    out.write(NL);
+                } else {
+                    out.write("\">");
+                    out.write(NL);
+                    out.flush();
+                    Files.copy(spool.path, stream);
+                    out.write("  </Table>");
+                    out.write(NL);
+                }
+            }
+            out.write("</Package>");
+            out.write(NL);
+        } finally {
+            for (Spool spool : this.spools.values()) {
+                spool.writer.close();
+                Files.deleteIfExists(spool.path);
+            }
+        }
+    }
+
+    /**
+     * Closes and deletes the spool files
+     */
+    @Override
+    public void abort() {
+        if (this.spools == null) return;
+        for (Spool spool : this.spools.values()) {
+            try {
+                spool.writer.close();
+                Files.deleteIfExists(spool.path);
+            } catch (IOException ignored) {
+                // the export failed already, a spool file that cannot be deleted is left in the temporary directory
+            }
+        }
+    }
+
+    static void writeRow(Writer out, TableRow row) throws IOException {
+        if (row.size() == 0 && !row.hasExtension()) {
+            out.write("    <Row/>");
+            out.write(NL);
+            return;
+        }
+        out.write("    <Row>");
+        out.write(NL);
+        for (int i = 0; i < row.size(); i++) {
+            out.write("      <Column name=\"");
+            escape(out, row.name(i));
+            out.write("\" value=\"");
+            escape(out, row.value(i));
+            out.write("\"/>");
+            out.write(NL);
+        }
+        if (row.hasExtension()) {
+            out.write("      <Extension");
+            for (Map.Entry<String, String> attribute : row.getExtension().entrySet()) {
+                out.write(' ');
+                out.write(attribute.getKey());
+                out.write("=\"");
+                escape(out, attribute.getValue());
+                out.write('"');
+            }
+            out.write("/>");
+            out.write(NL);
+        }
+        out.write("    </Row>");
+        out.write(NL);
+    }
+
+    /**
+     * Escapes an attribute value the same way the JDK serializer does
+     */
+    static void escape(Writer out, String value) throws IOException {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            String replacement;
+            char c = value.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                out.write(value, start, i - start);
+                out.write("&#" + Character.toCodePoint(c, value.charAt(i + 1)) + ";");
+                start = ++i + 1;
+                continue;
+            }
+            switch (c) {
+                case '&': replacement = "&amp;"; break;
+                case '<': replacement = "&lt;"; break;
+                case '>': replacement = "&gt;"; break;
+                case '"': replacement = "&quot;"; break;
+                case '\n': replacement = "&#10;"; break;
+                case '\r': replacement = "&#13;"; break;
+                case '\t': replacement = "&#9;"; break;
+                default: continue;
+            }
+            out.write(value, start, i - start);
+            out.write(replacement);
+            start = i + 1;
+        }
+        out.write(value, start, value.length() - start);
+    }
+
+    /**
+     * Passes writes on to a stream that belongs to the caller, closing only flushes it
+     */
+    private static class Unclosed extends FilterOutputStream {
+        private Unclosed(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.flush();
+        }
+    }
+
+    private static class Spool {
+        private final Path path;
+        private final Writer writer;
+        private int rows;
+
+        private Spool(Path path) throws IOException {
+            this.path = path;
+            this.writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8), 1 << 16);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.alliander.owltouml.exporters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A single row of an EA native table: an ordered list of columns followed by an optional extension element
+ */
+class TableRow {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<String> values = new ArrayList<>();
+    private TreeMap<String, String> extension;
+
+    TableRow column(String name, String value) {
+        this.names.add(name);
+        this.values.add(value);
+        return this;
+    }
+
+    /**
+     * Adds the (possibly empty) extension element, attributes are kept sorted by name like a DOM serializer does
+     */
+    TableRow extension() {
+        if (this.extension == null) this.extension = new TreeMap<>();
+        return this;
+    }
+
+    TableRow extension(String name, String value) {
+        extension().extension.put(name, value);
+        return this;
+    }
+
+    int size() {
+        return this.names.size();
+    }
+
+    String name(int index) {
+        return this.names.get(index);
+    }
+
+    String value(int index) {
+        return this.values.get(index);
+    }
+
+    boolean hasExtension() {
+        return this.extension != null;
+    }
+
+    Map<String, String> getExtension() {
+        return this.extension;
+    }
+}
@@ -0,0 +1,26 @@
+package com.alliander.owltouml.exporters;
+
+import javax.xml.transform.TransformerException;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination for the rows of an EA native export
+ */
+interface TableWriter {
+
+    /**
+     * Starts the export of the root package with the given tables, in document order
+     */
+    void open(String name, String guid, List<String> tables) throws IOException;
+
+    void write(String table, TableRow row) throws IOException;
+
+    void close() throws IOException, TransformerException;
+
+    /**
+     * Releases the files, threads and connections of an export that failed, without finishing it. Can be called
+     * after close failed, and more than once.
+     */
+    void abort();
+}
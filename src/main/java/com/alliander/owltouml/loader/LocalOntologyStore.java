@@ -0,0 +1,211 @@
+package com.alliander.owltouml.loader;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntologyIRIMapper;
+import org.semanticweb.owlapi.util.AutoIRIMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps ontology IRIs to local documents. IRIs are resolved through OASIS catalogs and ontology directories first,
+ * then through an on-disk cache of previously fetched documents. Documents that are not available locally are
+ * downloaded into the cache, unless the store is offline.
+ */
+public class LocalOntologyStore implements OWLOntologyIRIMapper {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LocalOntologyStore.class);
+    private static final String ACCEPT = "application/rdf+xml, text/turtle;q=0.9, application/owl+xml;q=0.8, */*;q=0.1";
+    private static final int MAX_REDIRECTS = 5;
+
+    private final Map<IRI, IRI> catalog = new HashMap<>();
+    private final List<OWLOntologyIRIMapper> directories = new ArrayList<>();
+    private final Path cacheDirectory;
+    private final boolean offline;
+    private final Properties index = new Properties();
+    private int timeoutMillis = (int) TimeUnit.SECONDS.toMillis(60);
+
+    /**
+     * @param cacheDirectory directory of the document cache, or null to only use catalogs
+     * @param offline never fetch documents over the network
+     */
+    public LocalOntologyStore(Path cacheDirectory, boolean offline) throws IOException {
+        this.cacheDirectory = cacheDirectory;
+        this.offline = offline;
+        if (cacheDirectory != null) {
+            Files.createDirectories(cacheDirectory);
+            Path indexFile = cacheDirectory.resolve("index.properties");
+            if (Files.exists(indexFile)) {
+                try (InputStream in = Files.newInputStream(indexFile)) {
+                    this.index.load(in);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the time connecting to a server and each read of a download may take, defaults to 60 seconds. Documents
+     * are fetched while the manager resolves an import, a server that stalls would block the load otherwise.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = (int) Math.min(Integer.MAX_VALUE, unit.toMillis(timeout));
+    }
+
+    /**
+     * Adds an OASIS XML catalog file, or a directory whose ontology documents are mapped by their ontology IRI
+     */
+    public void addCatalog(File catalog) throws IOException {
+        if (catalog.isDirectory()) {
+            this.directories.add(new AutoIRIMapper(catalog, true));
+            return;
+        }
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            Document document = factory.newDocumentBuilder().parse(catalog);
+            NodeList entries = document.getElementsByTagNameNS("*", "uri");
+            for (int i = 0; i < entries.getLength(); i++) {
+                Element entry = (Element) entries.item(i);
+                IRI documentIri = IRI.create(catalog.getAbsoluteFile().toURI().resolve(entry.getAttribute("uri")));
+                this.catalog.put(IRI.create(entry.getAttribute("name")), documentIri);
+            }
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Could not read catalog " + catalog, e);
+        }
+    }
+
+    @Override
+    public IRI getDocumentIRI(IRI ontologyIRI) {
+        IRI document = this.catalog.get(ontologyIRI);
+        if (document != null) return document;
+        for (OWLOntologyIRIMapper directory : this.directories) {
+            document = directory.getDocumentIRI(ontologyIRI);
+            if (document != null) return document;
+        }
+        if (!isRemote(ontologyIRI)) return null;
+        Path cached = getCachedDocument(ontologyIRI);
+        if (cached != null) return IRI.create(cached.toFile());
+        if (this.offline) {
+            LOG.warn("{} is not available offline", ontologyIRI);
+            // map to a document that does not exist, so the manager does not fall back to the network
+            return IRI.create(new File(System.getProperty("java.io.tmpdir"), "owltouml-offline-" + toHex(sha256().digest(ontologyIRI.toString().getBytes(StandardCharsets.UTF_8)))));
+        }
+        if (this.cacheDirectory == null) return null;
+        try {
+            return IRI.create(fetch(ontologyIRI).toFile());
+        } catch (IOException e) {
+            LOG.warn("Could not fetch {}: {}", ontologyIRI, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the cached document of an IRI, or null if it was never fetched
+     */
+    public synchronized Path getCachedDocument(IRI iri) {
+        if (this.cacheDirectory == null) return null;
+        String hash = this.index.getProperty(iri.toString());
+        if (hash == null) return null;
+        Path document = this.cacheDirectory.resolve(hash);
+        return Files.exists(document) ? document : null;
+    }
+
+    private Path fetch(IRI iri) throws IOException {
+        URLConnection connection = open(iri.toURI().toURL());
+        Path temp = Files.createTempFile(this.cacheDirectory, "fetch", ".part");
+        MessageDigest digest = sha256();
+        try (InputStream in = connection.getInputStream();
+             OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)), digest)) {
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        String hash = toHex(digest.digest());
+        Path document = this.cacheDirectory.resolve(hash);
+        Files.move(temp, document, StandardCopyOption.REPLACE_EXISTING);
+        synchronized (this) {
+            this.index.setProperty(iri.toString(), hash);
+            // replaced in one move, a run that stops while writing must not leave a truncated index
+            Path indexTemp = Files.createTempFile(this.cacheDirectory, "index", ".part");
+            try (OutputStream out = Files.newOutputStream(indexTemp)) {
+                this.index.store(out, "ontology IRI to content hash");
+            } catch (IOException e) {
+                Files.deleteIfExists(indexTemp);
+                throw e;
+            }
+            Files.move(indexTemp, this.cacheDirectory.resolve("index.properties"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        LOG.info("Cached {}", iri);
+        return document;
+    }
+
+    /**
+     * Opens a connection, following redirects across protocols which HttpURLConnection does not do by itself
+     */
+    private URLConnection open(URL url) throws IOException {
+        for (int i = 0; i < MAX_REDIRECTS; i++) {
+            URLConnection connection = url.openConnection();
+            connection.setConnectTimeout(this.timeoutMillis);
+            connection.setReadTimeout(this.timeoutMillis);
+            connection.setRequestProperty("Accept", ACCEPT);
+            if (!(connection instanceof HttpURLConnection)) return connection;
+            HttpURLConnection http = (HttpURLConnection) connection;
+            http.setInstanceFollowRedirects(false);
+            int status = http.getResponseCode();
+            if (status < 300 || status >= 400) {
+                if (status >= 400) throw new IOException("HTTP " + status + " for " + url);
+                return http;
+            }
+            url = new URL(url, http.getHeaderField("Location"));
+            http.disconnect();
+        }
+        throw new IOException("Too many redirects for " + url);
+    }
+
+    private static boolean isRemote(IRI iri) {
+        String iriString = iri.toString();
+        return iriString.startsWith("http://") || iriString.startsWith("https://");
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,243 @@
+package com.alliander.owltouml.loader;
+
+import com.alliander.owltouml.metrics.ConversionMetrics;
+import com.alliander.owltouml.metrics.StageMetrics;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.MissingImportHandlingStrategy;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyAlreadyExistsException;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyIRIMapper;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.OntologyCopy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads an ontology and its import closure into a manager, parsing a bounded number of documents at the same time.
+ * Every document is parsed by a manager of its own that skips the imports, so no document waits for another one.
+ * The imports a document declares are scheduled as soon as it is parsed, and the parsed ontologies are copied into
+ * the target manager. Loading takes about as long as the longest chain of imports instead of the sum of all
+ * documents.
+ * <p>
+ * A document that is not parsed within the timeout of its start is given up and left out, like a missing import.
+ * Its thread is abandoned, as a parser blocked in e.g. a socket read ignores interrupts, and the next document
+ * starts on a new thread. Imports that are not parsed within the total timeout are left out as well. Ontologies the
+ * manager already has are not parsed again. The parse time of every document is logged and, if metrics are set,
+ * recorded as stage "parse &lt;iri&gt;".
+ */
+public class ParallelImportLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelImportLoader.class);
+    // document of every import while a single document is parsed, it cannot be read so the import is skipped
+    private static final IRI SKIPPED = IRI.create("urn:owltouml:skipped-import");
+
+    private final OWLOntologyManager manager;
+    private final int threads;
+    private long timeoutMillis = TimeUnit.MINUTES.toMillis(5);
+    private long totalTimeoutMillis = TimeUnit.HOURS.toMillis(1);
+    private ConversionMetrics metrics;
+
+    /**
+     * @param manager the manager the ontologies are loaded into, it is only changed by the thread calling load
+     * @param threads the number of documents parsed at the same time
+     */
+    public ParallelImportLoader(OWLOntologyManager manager, int threads) {
+        this.manager = manager;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets the time a single document may take to parse, defaults to 5 minutes
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Sets the time the whole import closure may take to load, defaults to 1 hour
+     */
+    public void setTotalTimeout(long timeout, TimeUnit unit) {
+        this.totalTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Sets the metrics the parse times of the documents are recorded in
+     */
+    public void setMetrics(ConversionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the ontology, reused when the manager already has it
+     * @throws OWLOntologyCreationException if the ontology itself cannot be parsed in time, imports that cannot be
+     * parsed are only logged
+     */
+    public OWLOntology load(IRI iri) throws OWLOntologyCreationException {
+        OWLOntology loaded = this.manager.getOntology(iri);
+        if (loaded != null) return loaded;
+        List<OWLOntologyIRIMapper> mappers = new ArrayList<>();
+        for (OWLOntologyIRIMapper mapper : this.manager.getIRIMappers()) mappers.add(mapper);
+        AtomicInteger count = new AtomicInteger();
+        // threads are not reused while a parse that timed out still holds one, the number of parses is limited below
+        ExecutorService pool = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "import-parser-" + count.incrementAndGet());
+            // a parser that timed out cannot always be interrupted, it must not keep the JVM alive
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<OWLOntology> parser = new ExecutorCompletionService<>(pool);
+        Map<Future<OWLOntology>, Parse> running = new HashMap<>();
+        Deque<IRI> waiting = new ArrayDeque<>();
+        Set<IRI> scheduled = new HashSet<>();
+        long start = System.nanoTime();
+        long end = System.currentTimeMillis() + this.totalTimeoutMillis;
+        int parsed = 0;
+        OWLOntology root = null;
+        try {
+            scheduled.add(iri);
+            waiting.add(iri);
+            while (!running.isEmpty() || !waiting.isEmpty()) {
+                while (running.size() < this.threads && !waiting.isEmpty()) submit(parser, running, waiting.poll(), mappers);
+                long now = System.currentTimeMillis();
+                if (now >= end) {
+                    if (root == null) throw new OWLOntologyCreationException("Loading " + iri + " took longer than " + this.totalTimeoutMillis + " ms");
+                    LOG.warn("Skipped {} imports of {}, loading took longer than {} ms", running.size() + waiting.size(), iri, this.totalTimeoutMillis);
+                    break;
+                }
+                long wait = end - now;
+                for (Parse parse : running.values()) wait = Math.min(wait, parse.deadline - now);
+                Future<OWLOntology> done = parser.poll(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    cancelExpired(running, iri);
+                    continue;
+                }
+                Parse parse = running.remove(done);
+                // cancelled after its timeout
+                if (parse == null) continue;
+                OWLOntology ontology;
+                try {
+                    ontology = done.get();
+                } catch (ExecutionException e) {
+                    if (parse.iri.equals(iri)) {
+                        if (e.getCause() instanceof OWLOntologyCreationException) throw (OWLOntologyCreationException) e.getCause();
+                        throw new OWLOntologyCreationException("Could not parse " + iri, e.getCause());
+                    }
+                    LOG.warn("Could not load import {}: {}", parse.iri, e.getCause().getMessage());
+                    continue;
+                }
+                parsed++;
+                OWLOntology copy = copy(ontology);
+                if (parse.iri.equals(iri)) root = copy;
+                for (IRI imported : (Iterable<IRI>) ontology.directImportsDocuments()::iterator) {
+                    if (scheduled.add(imported) && !this.manager.contains(imported)) waiting.add(imported);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OWLOntologyCreationException("Interrupted while loading " + iri, e);
+        } finally {
+            pool.shutdownNow();
+        }
+        LOG.info("Parsed {} documents of {} in {} ms", parsed, iri, (System.nanoTime() - start) / 1000000);
+        return root;
+    }
+
+    /**
+     * Starts to parse a document, its time starts now
+     */
+    private void submit(CompletionService<OWLOntology> parser, Map<Future<OWLOntology>, Parse> running, IRI iri, List<OWLOntologyIRIMapper> mappers) {
+        Parse parse = new Parse(iri, System.currentTimeMillis() + this.timeoutMillis);
+        running.put(parser.submit(() -> parse(parse, mappers)), parse);
+    }
+
+    /**
+     * Cancels the parses that ran out of time, which frees their place for the next document even if their thread
+     * does not stop. The ontology itself cannot be left out.
+     */
+    private void cancelExpired(Map<Future<OWLOntology>, Parse> running, IRI iri) throws OWLOntologyCreationException {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<Future<OWLOntology>, Parse>> it = running.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Future<OWLOntology>, Parse> entry = it.next();
+            Parse parse = entry.getValue();
+            if (parse.deadline > now) continue;
+            entry.getKey().cancel(true);
+            it.remove();
+            if (parse.iri.equals(iri)) throw new OWLOntologyCreationException("Parsing " + iri + " took longer than " + this.timeoutMillis + " ms");
+            LOG.warn("Skipped import {}, parsing took longer than {} ms", parse.iri, this.timeoutMillis);
+        }
+    }
+
+    /**
+     * Parses a single document in a manager of its own, with the loader configuration of the target manager. Its
+     * imports are mapped to a document that cannot be read, and skipped silently.
+     */
+    private OWLOntology parse(Parse parse, List<OWLOntologyIRIMapper> mappers) throws OWLOntologyCreationException {
+        IRI iri = parse.iri;
+        StageMetrics stage = this.metrics != null ? this.metrics.start("parse " + iri) : StageMetrics.detached();
+        long start = System.nanoTime();
+        OWLOntologyManager document = OWLManager.createOWLOntologyManager();
+        document.setOntologyLoaderConfiguration(this.manager.getOntologyLoaderConfiguration()
+                .setMissingImportHandlingStrategy(MissingImportHandlingStrategy.SILENT));
+        document.getIRIMappers().add((OWLOntologyIRIMapper) ontologyIri -> ontologyIri.equals(iri) ? getDocument(iri, mappers) : SKIPPED);
+        OWLOntology ontology = document.loadOntology(iri);
+        stage.created(ontology.getAxiomCount());
+        stage.stop();
+        LOG.info("Parsed {} with {} axioms in {} ms", iri, ontology.getAxiomCount(), (System.nanoTime() - start) / 1000000);
+        return ontology;
+    }
+
+    private static IRI getDocument(IRI iri, List<OWLOntologyIRIMapper> mappers) {
+        for (OWLOntologyIRIMapper mapper : mappers) {
+            IRI document = mapper.getDocumentIRI(iri);
+            if (document != null) return document;
+        }
+        return iri;
+    }
+
+    /**
+     * @return the copy of a parsed ontology in the target manager, with its format and document IRI
+     */
+    private OWLOntology copy(OWLOntology ontology) throws OWLOntologyCreationException {
+        OWLOntologyManager document = ontology.getOWLOntologyManager();
+        OWLOntology copy;
+        try {
+            copy = this.manager.copyOntology(ontology, OntologyCopy.DEEP);
+        } catch (OWLOntologyAlreadyExistsException e) {
+            // loaded by another converter sharing the manager in the meantime
+            return this.manager.getOntology(e.getOntologyID());
+        }
+        this.manager.setOntologyFormat(copy, document.getOntologyFormat(ontology));
+        this.manager.setOntologyDocumentIRI(copy, document.getOntologyDocumentIRI(ontology));
+        return copy;
+    }
+
+    private static class Parse {
+        private final IRI iri;
+        private final long deadline;
+
+        private Parse(IRI iri, long deadline) {
+            this.iri = iri;
+            this.deadline = deadline;
+        }
+    }
+}
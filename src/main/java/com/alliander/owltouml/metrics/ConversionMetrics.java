@@ -0,0 +1,135 @@
+package com.alliander.owltouml.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metrics of the stages of a run, in the order the stages were first started. Can be written as a JSON report and
+ * published as MXBeans under com.alliander.owltouml:type=Stage.
+ */
+public class ConversionMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConversionMetrics.class);
+
+    private final String run;
+    private final Map<String, StageMetrics> stages = new LinkedHashMap<>();
+    private boolean registered;
+
+    /**
+     * @param run name of the run, used to tell the MXBeans of concurrent runs apart
+     */
+    public ConversionMetrics(String run) {
+        this.run = run;
+    }
+
+    /**
+     * Starts a stage, a stage that ran before is reset
+     */
+    public synchronized StageMetrics start(String name) {
+        StageMetrics stage = this.stages.get(name);
+        if (stage == null) {
+            stage = new StageMetrics(name);
+            this.stages.put(name, stage);
+            if (this.registered) register(stage);
+        }
+        stage.start();
+        return stage;
+    }
+
+    public synchronized List<StageMetrics> getStages() {
+        return new ArrayList<>(this.stages.values());
+    }
+
+    /**
+     * Publishes the stages on the platform MBean server, including stages started later
+     */
+    public synchronized void registerMXBeans() {
+        this.registered = true;
+        for (StageMetrics stage : this.stages.values()) register(stage);
+    }
+
+    /**
+     * Removes the MXBeans of this run from the platform MBean server
+     */
+    public synchronized void unregisterMXBeans() {
+        this.registered = false;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (StageMetrics stage : this.stages.values()) {
+            try {
+                ObjectName name = objectName(stage);
+                if (server.isRegistered(name)) server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOG.warn("Could not unregister metrics of {}: {}", stage.getName(), e.getMessage());
+            }
+        }
+    }
+
+    private void register(StageMetrics stage) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = objectName(stage);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(stage, name);
+        } catch (JMException e) {
+            LOG.warn("Could not register metrics of {}: {}", stage.getName(), e.getMessage());
+        }
+    }
+
+    private ObjectName objectName(StageMetrics stage) throws JMException {
+        return new ObjectName("com.alliander.owltouml:type=Stage,run=" + ObjectName.quote(this.run) + ",name=" + ObjectName.quote(stage.getName()));
+    }
+
+    /**
+     * Writes the stages as a JSON report
+     */
+    public void writeJson(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(toJson());
+        }
+    }
+
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"run\": ").append(quote(this.run)).append(",\n  \"stages\": [");
+        String separator = "\n";
+        for (StageMetrics stage : this.stages.values()) {
+            json.append(separator).append("    {\"name\": ").append(quote(stage.getName()))
+                    .append(", \"wallTimeNanos\": ").append(stage.getWallTimeNanos())
+                    .append(", \"allocatedBytes\": ").append(stage.getAllocatedBytes())
+                    .append(", \"created\": ").append(stage.getCreated())
+                    .append(", \"skipped\": ").append(stage.getSkipped()).append('}');
+            separator = ",\n";
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
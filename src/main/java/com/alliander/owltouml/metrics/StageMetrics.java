@@ -0,0 +1,95 @@
+package com.alliander.owltouml.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wall time, allocated bytes and the number of created and skipped entities of a single stage. Allocations are
+ * measured on the thread that starts and stops the stage, work done on other threads is not included.
+ */
+public class StageMetrics implements StageMetricsMXBean {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final String name;
+    private final LongAdder created = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private volatile long wallTimeNanos;
+    private volatile long allocatedBytes = -1;
+    private long startNanos;
+    private long startBytes;
+
+    StageMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return metrics that are not part of any report, for stages that run outside a measured conversion
+     */
+    public static StageMetrics detached() {
+        return new StageMetrics("");
+    }
+
+    void start() {
+        this.created.reset();
+        this.skipped.reset();
+        this.startBytes = allocatedBytes();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends the stage, recording its wall time and allocations
+     */
+    public void stop() {
+        this.wallTimeNanos = System.nanoTime() - this.startNanos;
+        long bytes = allocatedBytes();
+        this.allocatedBytes = bytes < 0 || this.startBytes < 0 ? -1 : bytes - this.startBytes;
+    }
+
+    public void created() {
+        this.created.increment();
+    }
+
+    public void created(long count) {
+        this.created.add(count);
+    }
+
+    public void skipped() {
+        this.skipped.increment();
+    }
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public long getWallTimeNanos() {
+        return this.wallTimeNanos;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    @Override
+    public long getCreated() {
+        return this.created.sum();
+    }
+
+    @Override
+    public long getSkipped() {
+        return this.skipped.sum();
+    }
+}
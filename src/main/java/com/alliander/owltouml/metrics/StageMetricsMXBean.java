@@ -0,0 +1,20 @@
+package com.alliander.owltouml.metrics;
+
+/**
+ * JMX view of the metrics of a single conversion or export stage
+ */
+public interface StageMetricsMXBean {
+
+    String getName();
+
+    long getWallTimeNanos();
+
+    /**
+     * @return the bytes allocated by the thread that ran the stage, or -1 if the JVM does not support it
+     */
+    long getAllocatedBytes();
+
+    long getCreated();
+
+    long getSkipped();
+}
@@ -0,0 +1,224 @@
+package com.alliander.owltouml.server;
+
+import com.alliander.owltouml.converter.OwlToUmlConverter;
+import com.alliander.owltouml.exporters.EnterpriseArchitectNativeExporter;
+import com.alliander.owltouml.exporters.OutputFormat;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.uml2.uml.Model;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyIRIMapper;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the converter warm in a long-running process and serves conversions over HTTP on the loopback interface.
+ * Loaded ontologies stay in a shared ontology manager between requests. Conversions run on a bounded number of
+ * workers with a bounded queue, requests that do not fit are answered with 503 right away. A reload removes the
+ * ontology only when no conversion is running, conversions that arrive in the meantime wait for it. Every request
+ * gets a converter and exporter with the settings of the server, the export is written in the output format of the
+ * exporter settings.
+ *
+ * <pre>
+ * GET /convert?ontology=&lt;uri&gt;&amp;prefix=&lt;prefix&gt;[&amp;reload=true]  the EA export of the ontology
+ * GET /status                                               the number of running and queued conversions
+ * </pre>
+ */
+public class ConversionServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConversionServer.class);
+
+    private final OWLOntologyManager manager = OwlToUmlConverter.createSharedManager();
+    // conversions share the ontologies of the manager, a reload removes one of them
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int queueSize = 16;
+    private Consumer<OwlToUmlConverter> converterSettings = converter -> { };
+    private Consumer<EnterpriseArchitectNativeExporter> exporterSettings = exporter -> { };
+    private HttpServer server;
+    private ThreadPoolExecutor conversions;
+    private ExecutorService requests;
+
+    public void addIRIMapper(OWLOntologyIRIMapper mapper) {
+        this.manager.getIRIMappers().add(mapper);
+    }
+
+    /**
+     * Sets the number of conversions that run at the same time, defaults to the number of processors
+     */
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Sets the number of conversions that may wait for a worker before requests are refused
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Sets the settings applied to the converter of every request, the IRI mappers belong to the shared manager
+     */
+    public void setConverterSettings(Consumer<OwlToUmlConverter> converterSettings) {
+        this.converterSettings = converterSettings;
+    }
+
+    /**
+     * Sets the settings applied to the exporter of every request, project files cannot be served
+     */
+    public void setExporterSettings(Consumer<EnterpriseArchitectNativeExporter> exporterSettings) {
+        this.exporterSettings = exporterSettings;
+    }
+
+    public void start(int port) throws IOException {
+        this.conversions = new ThreadPoolExecutor(this.workers, this.workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, this.queueSize)));
+        // the request threads only parse requests and hand them over, the conversions write the responses
+        this.requests = Executors.newFixedThreadPool(2);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/convert", this::handleConvert);
+        this.server.createContext("/status", this::handleStatus);
+        this.server.setExecutor(this.requests);
+        this.server.start();
+        LOG.info("Listening on http://{}:{}/convert", this.server.getAddress().getHostString(), this.server.getAddress().getPort());
+    }
+
+    /**
+     * @return the port the server listens on, e.g. after starting it on port 0
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    public void stop() {
+        this.server.stop(1);
+        this.requests.shutdown();
+        this.conversions.shutdown();
+    }
+
+    private void handleConvert(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters;
+        try {
+            parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        } catch (IllegalArgumentException e) {
+            // a malformed percent-escape
+            respond(exchange, 400, "Malformed query: " + e.getMessage() + "\n");
+            return;
+        }
+        String ontology = parameters.get("ontology");
+        String prefix = parameters.get("prefix");
+        if (ontology == null || prefix == null) {
+            respond(exchange, 400, "Missing parameter ontology or prefix\n");
+            return;
+        }
+        try {
+            this.conversions.execute(() -> convert(exchange, ontology, prefix, "true".equals(parameters.get("reload"))));
+        } catch (RejectedExecutionException e) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, "Too many conversions, try again later\n");
+        }
+    }
+
+    private void convert(HttpExchange exchange, String ontology, String prefix, boolean reload) {
+        long start = System.nanoTime();
+        try {
+            if (reload) {
+                this.lock.writeLock().lock();
+                try {
+                    OWLOntology loaded = this.manager.getOntology(IRI.create(ontology));
+                    if (loaded != null) this.manager.removeOntology(loaded);
+                } finally {
+                    this.lock.writeLock().unlock();
+                }
+            }
+            // held until the export is written, the annotations are read from the ontology while exporting
+            this.lock.readLock().lock();
+            try {
+                OwlToUmlConverter converter = new OwlToUmlConverter(this.manager);
+                this.converterSettings.accept(converter);
+                Model model;
+                try {
+                    converter.loadOntology(ontology, prefix);
+                    model = converter.convertToUml();
+                } catch (Exception e) {
+                    respond(exchange, 422, "Could not convert " + ontology + ": " + e.getMessage() + "\n");
+                    return;
+                }
+                EnterpriseArchitectNativeExporter exporter = new EnterpriseArchitectNativeExporter();
+                this.exporterSettings.accept(exporter);
+                exporter.setUmlModel(model);
+                exporter.setSourceIris(converter.getSourceIris());
+                exporter.setAnnotations(converter::getAnnotations);
+                exchange.getResponseHeaders().set("Content-Type", getContentType(exporter.getOutputFormat()));
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    exporter.export(body, prefix);
+                }
+            } finally {
+                this.lock.readLock().unlock();
+            }
+            LOG.info("Served {} in {} ms", ontology, (System.nanoTime() - start) / 1000000);
+        } catch (Exception e) {
+            // the headers are sent, the client sees a truncated response
+            LOG.warn("Failed serving {}", ontology, e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String getContentType(OutputFormat format) {
+        switch (format) {
+            case GZIP:
+                return "application/gzip";
+            case ZIP:
+                return "application/zip";
+            default:
+                return "application/xml; charset=UTF-8";
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "{\"running\": " + this.conversions.getActiveCount() + ", \"queued\": " + this.conversions.getQueue().size() + "}\n");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) return parameters;
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator < 0) continue;
+            parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"), URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,165 @@
+package com.alliander.owltouml.watch;
+
+import com.alliander.owltouml.converter.ModelChanges;
+import com.alliander.owltouml.converter.OwlToUmlConverter;
+import com.alliander.owltouml.exporters.EnterpriseArchitectNativeExporter;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Watches the local documents of a converted ontology and its imports, and exports the ontology again when they
+ * change. Bursts of events are collected until the files have been quiet for the debounce time. A changed ontology
+ * document is converted incrementally. A changed import is only reloaded into the manager of the converter, as the
+ * conversion covers the axioms of the ontology itself and not those of its imports. The export is written in the
+ * output format of the exporter, as a single file or in partitions.
+ */
+public class OntologyWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OntologyWatcher.class);
+
+    private final OwlToUmlConverter converter;
+    private final EnterpriseArchitectNativeExporter exporter;
+    private final String output;
+    private long debounceMillis = 300;
+    private int partitionThreads;
+    private Path metricsFile;
+
+    /**
+     * @param output name of the exported file without extension
+     */
+    public OntologyWatcher(OwlToUmlConverter converter, EnterpriseArchitectNativeExporter exporter, String output) {
+        this.converter = converter;
+        this.exporter = exporter;
+        this.output = output;
+    }
+
+    /**
+     * Sets how long the documents have to be unchanged before they are reloaded
+     */
+    public void setDebounce(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Exports in partitions written by the given number of threads, as
+     * {@link EnterpriseArchitectNativeExporter#exportPartitioned(String, int)}, 0 exports a single file
+     */
+    public void setPartitionThreads(int partitionThreads) {
+        this.partitionThreads = partitionThreads;
+    }
+
+    /**
+     * Sets the file the metrics of the converter are written to after every update, as the watcher does not return
+     */
+    public void setMetricsFile(Path metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    /**
+     * Watches until the thread is interrupted
+     */
+    public void run() throws IOException, InterruptedException {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            Set<Path> directories = new LinkedHashSet<>();
+            for (Path document : getDocuments().keySet()) {
+                if (directories.add(document.getParent()))
+                    document.getParent().register(service, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            }
+            LOG.info("Watching {} directories for changes", directories.size());
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = service.take();
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                        changed.add(((Path) key.watchable()).resolve((Path) event.context()).toAbsolutePath().normalize());
+                    }
+                    key.reset();
+                    key = service.poll(this.debounceMillis, TimeUnit.MILLISECONDS);
+                }
+                update(changed);
+            }
+        }
+    }
+
+    /**
+     * @return the local documents of the ontology and its imports, with the loaded ontology or null for the converted
+     * ontology itself
+     */
+    private Map<Path, OWLOntology> getDocuments() {
+        Map<Path, OWLOntology> documents = new HashMap<>();
+        OWLOntologyManager manager = this.converter.getManager();
+        List<OWLOntology> loaded = manager.ontologies().collect(Collectors.toList());
+        for (OWLOntology ontology : loaded) {
+            if (ontology == this.converter.getOntology()) continue;
+            IRI document = manager.getOntologyDocumentIRI(ontology);
+            if (document != null && document.toString().startsWith("file:"))
+                documents.put(Paths.get(document.toURI()).toAbsolutePath().normalize(), ontology);
+        }
+        Path source = this.converter.getSourceDocument();
+        if (source != null) documents.put(source.toAbsolutePath().normalize(), null);
+        return documents;
+    }
+
+    private void update(Set<Path> changed) {
+        long start = System.nanoTime();
+        Map<Path, OWLOntology> documents = getDocuments();
+        boolean export = false;
+        try {
+            for (Path path : changed) {
+                if (!documents.containsKey(path)) continue;
+                OWLOntology imported = documents.get(path);
+                OWLOntologyManager manager = this.converter.getManager();
+                if (imported != null) {
+                    IRI document = manager.getOntologyDocumentIRI(imported);
+                    manager.removeOntology(imported);
+                    manager.loadOntologyFromOntologyDocument(document);
+                    // the axioms of imports are not converted, the export stays the same
+                    LOG.info("Reloaded import {}", path);
+                    continue;
+                }
+                OWLOntology version = this.converter.getOntology() != null ? this.converter.loadVersion(IRI.create(path.toFile()).toString()) : null;
+                if (version != null && this.converter.hasSamePrefixes(version)) {
+                    ModelChanges changes = this.converter.updateOntology(version);
+                    LOG.info("Updated {} added, {} updated and {} removed elements", changes.getAdded().size(), changes.getUpdated().size(), changes.getRemoved().size());
+                    export |= !changes.isEmpty();
+                } else {
+                    this.converter.reloadOntology();
+                    this.exporter.setUmlModel(this.converter.convertToUml());
+                    this.exporter.setSourceIris(this.converter.getSourceIris());
+                    this.exporter.setAnnotations(this.converter::getAnnotations);
+                    export = true;
+                }
+            }
+            if (export) {
+                File file;
+                if (this.partitionThreads > 0) {
+                    this.exporter.exportPartitioned(this.output, this.partitionThreads);
+                    file = new File(this.output + ".index.xml");
+                } else {
+                    file = this.exporter.getFile(this.output, "");
+                    this.exporter.export(file);
+                }
+                LOG.info("Exported {} in {} ms", file, (System.nanoTime() - start) / 1000000);
+                if (this.metricsFile != null) this.converter.getMetrics().writeJson(this.metricsFile);
+            }
+        } catch (Exception e) {
+            // keep watching, the next save may fix the document
+            LOG.warn("Could not update {}: {}", this.output, e.toString());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.alliander.owltouml.converter;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.IRI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AnnotationFilterTest {
+
+    private static final IRI LABEL = IRI.create("http://www.w3.org/2000/01/rdf-schema#label");
+    private static final IRI COMMENT = IRI.create("http://www.w3.org/2000/01/rdf-schema#comment");
+
+    @Test
+    public void keepsEveryAnnotationByDefault() {
+        AnnotationFilter filter = new AnnotationFilter();
+        assertTrue(filter.accepts(annotation(LABEL, "nl", "Kabel")));
+        assertTrue(filter.accepts(annotation(COMMENT, "", "A cable")));
+    }
+
+    @Test
+    public void keepsTheAddedPropertiesOnly() {
+        AnnotationFilter filter = new AnnotationFilter();
+        filter.addProperty(COMMENT);
+        assertTrue(filter.accepts(annotation(COMMENT, "en", "A cable")));
+        assertFalse(filter.accepts(annotation(LABEL, "en", "Cable")));
+    }
+
+    @Test
+    public void keepsRegionalVariantsAndValuesWithoutLanguage() {
+        AnnotationFilter filter = new AnnotationFilter();
+        filter.addLanguage("EN");
+        assertTrue(filter.accepts(annotation(LABEL, "en", "Cable")));
+        assertTrue(filter.accepts(annotation(LABEL, "en-GB", "Cable")));
+        assertTrue(filter.accepts(annotation(LABEL, "", "Cable")));
+        assertFalse(filter.accepts(annotation(LABEL, "nl", "Kabel")));
+        // a language that merely starts with the same letters is another language
+        assertFalse(filter.accepts(annotation(LABEL, "eng", "Cable")));
+    }
+
+    @Test
+    public void truncatesLongTextsToTheMaximumLength() {
+        AnnotationFilter filter = new AnnotationFilter();
+        filter.setMaxLength(10);
+        assertEquals("Short", filter.getText(annotation(LABEL, "en", "Short")));
+        assertEquals("0123456789", filter.getText(annotation(LABEL, "en", "0123456789")));
+        assertEquals("0123456...", filter.getText(annotation(LABEL, "en", "0123456789A")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAMaximumLengthWithoutRoomForText() {
+        new AnnotationFilter().setMaxLength(3);
+    }
+
+    private static OntologyIndex.Annotation annotation(IRI property, String language, String text) {
+        return new OntologyIndex.Annotation(property, language, text);
+    }
+}
@@ -0,0 +1,90 @@
+package com.alliander.owltouml.converter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class OntologySnapshotTest {
+
+    private static final IRI NAME = IRI.create("http://example.org/test#name");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsTheIndexThatWasWritten() throws Exception {
+        OntologyIndex index = OntologyIndex.build(load());
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        prefixes.put(":", "http://example.org/test#");
+        Path file = this.folder.getRoot().toPath().resolve("example.snapshot");
+        new OntologySnapshot(prefixes, index).write(file, "hash");
+
+        OntologySnapshot snapshot = OntologySnapshot.read(file, "hash");
+        assertEquals(prefixes, snapshot.prefixes);
+        assertEquals(index.getClasses(), snapshot.index.getClasses());
+        assertEquals(index.getDataProperties(), snapshot.index.getDataProperties());
+        assertEquals(index.getObjectRanges(IRI.create("http://example.org/test#locatedAt")),
+                snapshot.index.getObjectRanges(IRI.create("http://example.org/test#locatedAt")));
+        assertEquals(1, snapshot.index.getAnnotations(NAME).size());
+        assertEquals("The name of an asset", snapshot.index.getAnnotations(NAME).get(0).text);
+        assertEquals("en", snapshot.index.getAnnotations(NAME).get(0).language);
+    }
+
+    @Test
+    public void ignoresTheSnapshotOfAnotherSource() throws Exception {
+        Path file = this.folder.getRoot().toPath().resolve("example.snapshot");
+        new OntologySnapshot(new LinkedHashMap<>(), OntologyIndex.build(load())).write(file, "hash");
+        assertNull(OntologySnapshot.read(file, "other"));
+    }
+
+    @Test
+    public void reportsATruncatedSnapshotAsUnreadable() throws Exception {
+        Path file = this.folder.getRoot().toPath().resolve("example.snapshot");
+        new OntologySnapshot(new LinkedHashMap<>(), OntologyIndex.build(load())).write(file, "hash");
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        try {
+            OntologySnapshot.read(file, "hash");
+            fail("A truncated snapshot must not be read");
+        } catch (IOException expected) {
+            // the converter parses the ontology instead
+        }
+    }
+
+    @Test
+    public void converterParsesTheOntologyWhenTheSnapshotIsCorrupt() throws Exception {
+        String iri = getDocument().toURI().toString();
+        Path directory = this.folder.newFolder("snapshots").toPath();
+        Files.write(OntologySnapshot.file(directory, IRI.create(iri)), new byte[]{0x4F, 0x57, 0x55, 0x4D, 0, 0, 0, 2, 0, 0});
+        OwlToUmlConverter converter = new OwlToUmlConverter();
+        converter.setSnapshotDirectory(directory);
+        converter.loadOntology(iri, "ex");
+        assertNotNull(converter.getOntology());
+        // the corrupt snapshot is replaced by a readable one
+        assertNotNull(OntologySnapshot.read(OntologySnapshot.file(directory, IRI.create(iri)), OntologySnapshot.hash(getDocument().toPath())));
+    }
+
+    private static OWLOntology load() throws Exception {
+        return OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(getDocument());
+    }
+
+    private static File getDocument() throws Exception {
+        return new File(OntologySnapshotTest.class.getResource("/ontologies/example.ttl").toURI());
+    }
+}
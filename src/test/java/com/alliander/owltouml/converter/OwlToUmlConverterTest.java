@@ -0,0 +1,100 @@
+package com.alliander.owltouml.converter;
+
+import org.eclipse.uml2.uml.Association;
+import org.eclipse.uml2.uml.Class;
+import org.eclipse.uml2.uml.Element;
+import org.junit.Test;
+import org.semanticweb.owlapi.model.IRI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OwlToUmlConverterTest {
+
+    private static final IRI LOCATED_AT = IRI.create("http://example.org/test#locatedAt");
+
+    @Test
+    public void crossProductCreatesAnAssociationForEveryPair() throws Exception {
+        OwlToUmlConverter converter = load();
+        converter.convertToUml();
+        List<Association> associations = getAssociations(converter, LOCATED_AT);
+        assertEquals(4, associations.size());
+        assertEquals(0, converter.getFanOutReport().getCollapsedProperties());
+    }
+
+    @Test
+    public void everyAssociationOwnsTheCommentOfItsProperty() throws Exception {
+        OwlToUmlConverter converter = load();
+        converter.convertToUml();
+        for (Association association : getAssociations(converter, LOCATED_AT)) {
+            assertEquals(1, association.getOwnedComments().size());
+            assertTrue(association.getOwnedComments().get(0).getBody().contains("Where an asset is"));
+        }
+    }
+
+    @Test
+    public void withoutCommentsTheAnnotationsAreRenderedOnRequest() throws Exception {
+        OwlToUmlConverter converter = load();
+        converter.setAnnotationComments(false);
+        converter.convertToUml();
+        for (Association association : getAssociations(converter, LOCATED_AT)) {
+            assertTrue(association.getOwnedComments().isEmpty());
+            assertEquals(1, converter.getAnnotations(association).size());
+        }
+    }
+
+    @Test
+    public void theAnnotationFilterDropsOtherLanguages() throws Exception {
+        OwlToUmlConverter converter = load();
+        AnnotationFilter filter = new AnnotationFilter();
+        filter.addLanguage("nl");
+        converter.setAnnotationFilter(filter);
+        converter.convertToUml();
+        assertTrue(converter.getAnnotations(LOCATED_AT).isEmpty());
+    }
+
+    @Test
+    public void unionClassCreatesOneAssociationBetweenUnions() throws Exception {
+        OwlToUmlConverter converter = load();
+        converter.setAssociationStrategy(AssociationStrategy.UNION_CLASS);
+        converter.convertToUml();
+        List<Association> associations = getAssociations(converter, LOCATED_AT);
+        assertEquals(1, associations.size());
+        Association association = associations.get(0);
+        assertEquals("LocationOrOwner", association.getMemberEnds().get(0).getType().getName());
+        assertEquals("CableOrStation", association.getMemberEnds().get(1).getType().getName());
+        assertEquals(1, converter.getFanOutReport().getCollapsedProperties());
+        assertEquals(1, converter.getFanOutReport().getAssociations());
+        assertEquals(4, converter.getFanOutReport().getCrossProductAssociations());
+        Class union = (Class) association.getMemberEnds().get(1).getType();
+        assertTrue(union.isAbstract());
+    }
+
+    @Test
+    public void unionClassKeepsTheCrossProductUpToTheThreshold() throws Exception {
+        OwlToUmlConverter converter = load();
+        converter.setAssociationStrategy(AssociationStrategy.UNION_CLASS);
+        converter.setAssociationThreshold(4);
+        converter.convertToUml();
+        assertEquals(4, getAssociations(converter, LOCATED_AT).size());
+        assertEquals(0, converter.getFanOutReport().getCollapsedProperties());
+    }
+
+    private static OwlToUmlConverter load() throws Exception {
+        OwlToUmlConverter converter = new OwlToUmlConverter();
+        converter.loadOntology(OwlToUmlConverterTest.class.getResource("/ontologies/example.ttl").toURI().toString(), "ex");
+        return converter;
+    }
+
+    private static List<Association> getAssociations(OwlToUmlConverter converter, IRI property) {
+        List<Association> associations = new ArrayList<>();
+        for (Map.Entry<Element, IRI> entry : converter.getSourceIris().entrySet()) {
+            if (entry.getKey() instanceof Association && entry.getValue().equals(property)) associations.add((Association) entry.getKey());
+        }
+        return associations;
+    }
+}
@@ -0,0 +1,48 @@
+package com.alliander.owltouml.converter;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.IRI;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PrefixCacheTest {
+
+    @Test
+    public void usesTheLongestMatchingNamespace() {
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        prefixes.put("ex:", "http://example.org/");
+        prefixes.put("asset:", "http://example.org/asset#");
+        PrefixCache cache = new PrefixCache(prefixes, "default");
+
+        PrefixCache.Name name = cache.resolve(IRI.create("http://example.org/asset#Cable"));
+        assertEquals("asset", name.prefix);
+        assertEquals("Cable", name.localName);
+        assertEquals("asset:Cable", name.prefixedName);
+        assertEquals("ex:location#Street", cache.resolve(IRI.create("http://example.org/location#Street")).prefixedName);
+    }
+
+    @Test
+    public void usesTheDefaultPrefixForTheEmptyPrefixName() {
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        prefixes.put(":", "http://example.org/test#");
+        PrefixCache cache = new PrefixCache(prefixes, "ex");
+        assertEquals("ex:Asset", cache.resolve(IRI.create("http://example.org/test#Asset")).prefixedName);
+    }
+
+    @Test
+    public void resolvesEveryIriOnce() {
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        prefixes.put("ex:", "http://example.org/");
+        PrefixCache cache = new PrefixCache(prefixes, "default");
+        assertNull(cache.resolve(IRI.create("http://other.org/Asset")));
+        assertNull(cache.resolve(IRI.create("http://other.org/Asset")));
+        cache.resolve(IRI.create("http://example.org/Asset"));
+        cache.resolve(IRI.create("http://example.org/Asset"));
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getHits());
+    }
+}
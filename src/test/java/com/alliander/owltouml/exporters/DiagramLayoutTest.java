@@ -0,0 +1,80 @@
+package com.alliander.owltouml.exporters;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DiagramLayoutTest {
+
+    @Test
+    public void placesEveryClassBelowItsSuperclasses() {
+        // 0 <- 1 <- 3, 0 <- 2 <- 3, a diamond with a class two levels below the root
+        int[][] parents = {{}, {0}, {0}, {1, 2}};
+        List<List<DiagramLayout.Placement>> diagrams = new DiagramLayout(10).layout(sizes(4, 100), sizes(4, 50), parents);
+        assertEquals(1, diagrams.size());
+        DiagramLayout.Placement[] placements = byNode(diagrams.get(0), 4);
+        for (int node = 0; node < parents.length; node++) {
+            for (int parent : parents[node]) {
+                // EA measures y downwards as negative values
+                assertTrue(placements[node].top < placements[parent].bottom);
+            }
+        }
+        assertEquals(placements[1].top, placements[2].top);
+    }
+
+    @Test
+    public void keepsInheritanceTreesTogetherWhenTheyFit() {
+        // two trees of three classes and one of two
+        int[][] parents = {{}, {0}, {0}, {}, {3}, {3}, {}, {6}};
+        List<List<DiagramLayout.Placement>> diagrams = new DiagramLayout(5).layout(sizes(8, 100), sizes(8, 50), parents);
+        assertEquals(2, diagrams.size());
+        assertEquals(new HashSet<>(Arrays.asList(0, 1, 2)), nodes(diagrams.get(0)));
+        assertEquals(new HashSet<>(Arrays.asList(3, 4, 5, 6, 7)), nodes(diagrams.get(1)));
+    }
+
+    @Test
+    public void splitsATreeThatDoesNotFitLayerByLayer() {
+        int[][] parents = {{}, {0}, {0}, {1}, {2}};
+        List<List<DiagramLayout.Placement>> diagrams = new DiagramLayout(2).layout(sizes(5, 100), sizes(5, 50), parents);
+        assertEquals(3, diagrams.size());
+        assertEquals(new HashSet<>(Arrays.asList(0, 1)), nodes(diagrams.get(0)));
+        assertEquals(new HashSet<>(Arrays.asList(2, 3)), nodes(diagrams.get(1)));
+        assertEquals(new HashSet<>(Arrays.asList(4)), nodes(diagrams.get(2)));
+    }
+
+    @Test
+    public void wrapsWideLayersIntoRows() {
+        int[][] parents = new int[30][0];
+        List<List<DiagramLayout.Placement>> diagrams = new DiagramLayout(30).layout(sizes(30, 200), sizes(30, 50), parents);
+        Set<Integer> rows = new HashSet<>();
+        for (DiagramLayout.Placement placement : diagrams.get(0)) {
+            assertTrue(placement.right <= 1600);
+            rows.add(placement.top);
+        }
+        assertTrue(rows.size() > 1);
+    }
+
+    private static int[] sizes(int count, int size) {
+        int[] sizes = new int[count];
+        Arrays.fill(sizes, size);
+        return sizes;
+    }
+
+    private static DiagramLayout.Placement[] byNode(List<DiagramLayout.Placement> placements, int count) {
+        DiagramLayout.Placement[] byNode = new DiagramLayout.Placement[count];
+        for (DiagramLayout.Placement placement : placements) byNode[placement.node] = placement;
+        return byNode;
+    }
+
+    private static Set<Integer> nodes(List<DiagramLayout.Placement> placements) {
+        Set<Integer> nodes = new HashSet<>();
+        for (DiagramLayout.Placement placement : placements) nodes.add(placement.node);
+        return nodes;
+    }
+}
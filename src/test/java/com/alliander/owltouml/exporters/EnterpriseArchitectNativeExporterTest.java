@@ -0,0 +1,205 @@
+package com.alliander.owltouml.exporters;
+
+import com.alliander.owltouml.converter.OwlToUmlConverter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EnterpriseArchitectNativeExporterTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2020, 1, 1, 12, 0);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void deterministicExportsAreIdentical() throws Exception {
+        File first = export(convert("example.ttl"), "first");
+        File second = export(convert("example.ttl"), "second");
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+        for (String table : new String[]{"t_package", "t_object", "t_attribute"}) {
+            List<String> guids = getGuids(read(first).get(table));
+            assertEquals(table + " has duplicate GUIDs", guids.size(), new HashSet<>(guids).size());
+        }
+    }
+
+    @Test
+    public void elementsWithoutIriKeepTheirGuidWhenTheOntologyChanges() throws Exception {
+        Map<String, List<Map<String, String>>> first = read(export(convert("example.ttl"), "first"));
+        Map<String, List<Map<String, String>>> second = read(export(convert("example-v2.ttl"), "second"));
+        // the root package has no IRI, its GUID is derived from its path
+        assertEquals(first.get("t_package").get(0).get("ea_guid"), second.get("t_package").get(0).get("ea_guid"));
+        assertEquals(getGuids(first.get("t_package")), getGuids(second.get("t_package")));
+    }
+
+    @Test
+    public void everyRowHasTheTimestampOfTheRun() throws Exception {
+        Map<String, List<Map<String, String>>> tables = read(export(convert("example.ttl"), "example"));
+        for (String table : new String[]{"t_package", "t_object"}) {
+            for (Map<String, String> row : tables.get(table)) {
+                assertEquals("2020-01-01 12:00:00", row.get("CreatedDate"));
+                assertEquals("2020-01-01 12:00:00", row.get("ModifiedDate"));
+            }
+        }
+    }
+
+    @Test
+    public void notesRenderedByTheExporterMatchTheComments() throws Exception {
+        File comments = export(convert("example.ttl"), "comments");
+        OwlToUmlConverter converter = load("example.ttl");
+        converter.setAnnotationComments(false);
+        File rendered = export(converter, "rendered");
+        assertArrayEquals(Files.readAllBytes(comments.toPath()), Files.readAllBytes(rendered.toPath()));
+        assertTrue(find(read(rendered).get("t_attribute"), "Name", "ex:name").get("Notes").startsWith("The name of an asset"));
+    }
+
+    @Test
+    public void directExportHasTheGuidsOfTheModelExport() throws Exception {
+        File model = export(convert("example.ttl"), "model");
+        OwlToUmlConverter converter = load("example.ttl");
+        EnterpriseArchitectNativeExporter exporter = createExporter();
+        String name = new File(this.folder.getRoot(), "direct").getPath();
+        converter.convert(exporter.openSink(name));
+        Map<String, List<Map<String, String>>> expected = read(model);
+        Map<String, List<Map<String, String>>> actual = read(new File(name + ".xml"));
+        for (String table : new String[]{"t_package", "t_object", "t_attribute"}) {
+            assertEquals(table, new HashSet<>(getGuids(expected.get(table))), new HashSet<>(getGuids(actual.get(table))));
+        }
+    }
+
+    @Test
+    public void exportChangesReusesTheIdentifiersOfReplacedRows() throws Exception {
+        OwlToUmlConverter converter = load("example.ttl");
+        EnterpriseArchitectNativeExporter exporter = createExporter();
+        exporter.setUmlModel(converter.convertToUml());
+        exporter.setSourceIris(converter.getSourceIris());
+        exporter.setAnnotations(converter::getAnnotations);
+        String name = new File(this.folder.getRoot(), "example").getPath();
+        exporter.export(name);
+        exporter.exportChanges(name, converter.updateOntology(getResource("example-v2.ttl")));
+        Map<String, List<Map<String, String>>> full = read(new File(name + ".xml"));
+        Map<String, List<Map<String, String>>> delta = read(new File(name + ".delta.xml"));
+
+        // the attribute of the changed data property is converted again, with its GUID and id
+        Map<String, String> attribute = find(full.get("t_attribute"), "Name", "ex:name");
+        Map<String, String> changed = find(delta.get("t_attribute"), "Name", "ex:name");
+        assertEquals(attribute.get("ea_guid"), changed.get("ea_guid"));
+        assertEquals(attribute.get("Object_ID"), changed.get("Object_ID"));
+        assertTrue(changed.get("Notes").contains("known"));
+
+        // the associations that are converted again keep their id, those to the removed class are deleted
+        Set<String> connectors = new HashSet<>();
+        for (Map<String, String> row : full.get("t_connector")) connectors.add(row.get("Connector_ID"));
+        for (Map<String, String> row : delta.get("t_connector")) assertTrue(connectors.contains(row.get("Connector_ID")));
+        Set<String> guids = new HashSet<>(getGuids(full.get("t_object")));
+        guids.addAll(getGuids(full.get("t_attribute")));
+        for (String guid : getGuids(delta.get("t_object"))) assertTrue(guids.contains(guid));
+
+        String owner = find(full.get("t_object"), "name", "Owner").get("ea_guid");
+        org.w3c.dom.Document deleted = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(name + ".deleted.xml"));
+        List<String> deletedGuids = new ArrayList<>();
+        int deletedConnectors = 0;
+        NodeList rows = deleted.getElementsByTagName("Row");
+        for (int i = 0; i < rows.getLength(); i++) {
+            Element row = (Element) rows.item(i);
+            if (row.getAttribute("table").equals("t_connector")) {
+                deletedConnectors++;
+                assertTrue(connectors.contains(row.getAttribute("Connector_ID")));
+            } else {
+                deletedGuids.add(row.getAttribute("ea_guid"));
+            }
+        }
+        assertTrue(deletedGuids.contains(owner));
+        assertEquals(1, deletedGuids.size());
+        // the associations from both domain classes to Owner and its generalization
+        assertEquals(3, deletedConnectors);
+    }
+
+    private OwlToUmlConverter load(String resource) throws Exception {
+        OwlToUmlConverter converter = new OwlToUmlConverter();
+        converter.loadOntology(getResource(resource), "ex");
+        return converter;
+    }
+
+    private OwlToUmlConverter convert(String resource) throws Exception {
+        OwlToUmlConverter converter = load(resource);
+        converter.convertToUml();
+        return converter;
+    }
+
+    private static String getResource(String name) throws Exception {
+        return EnterpriseArchitectNativeExporterTest.class.getResource("/ontologies/" + name).toURI().toString();
+    }
+
+    private static EnterpriseArchitectNativeExporter createExporter() {
+        EnterpriseArchitectNativeExporter exporter = new EnterpriseArchitectNativeExporter();
+        exporter.setDeterministic(true);
+        exporter.setTimestamp(TIMESTAMP);
+        return exporter;
+    }
+
+    private File export(OwlToUmlConverter converter, String name) throws Exception {
+        EnterpriseArchitectNativeExporter exporter = createExporter();
+        exporter.setUmlModel(converter.convertToUml());
+        exporter.setSourceIris(converter.getSourceIris());
+        exporter.setAnnotations(converter::getAnnotations);
+        File file = new File(this.folder.getRoot(), name + ".xml");
+        exporter.export(file);
+        return file;
+    }
+
+    /**
+     * @return the columns of the rows of every table of an export
+     */
+    private static Map<String, List<Map<String, String>>> read(File file) throws Exception {
+        org.w3c.dom.Document dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        Map<String, List<Map<String, String>>> tables = new HashMap<>();
+        NodeList tableElements = dom.getElementsByTagName("Table");
+        for (int i = 0; i < tableElements.getLength(); i++) {
+            Element table = (Element) tableElements.item(i);
+            List<Map<String, String>> rows = new ArrayList<>();
+            NodeList rowElements = table.getElementsByTagName("Row");
+            for (int j = 0; j < rowElements.getLength(); j++) {
+                Map<String, String> columns = new HashMap<>();
+                NodeList columnElements = ((Element) rowElements.item(j)).getElementsByTagName("Column");
+                for (int k = 0; k < columnElements.getLength(); k++) {
+                    Element column = (Element) columnElements.item(k);
+                    columns.put(column.getAttribute("name"), column.getAttribute("value"));
+                }
+                rows.add(columns);
+            }
+            tables.put(table.getAttribute("name"), rows);
+        }
+        return tables;
+    }
+
+    private static List<String> getGuids(List<Map<String, String>> rows) {
+        List<String> guids = new ArrayList<>();
+        for (Map<String, String> row : rows) guids.add(row.get("ea_guid"));
+        return guids;
+    }
+
+    private static Map<String, String> find(List<Map<String, String>> rows, String column, String value) {
+        for (Map<String, String> row : rows) {
+            if (value.equals(row.get(column))) return row;
+        }
+        throw new AssertionError("No row with " + column + " " + value);
+    }
+}
@@ -0,0 +1,95 @@
+package com.alliander.owltouml.exporters;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class OutputFormatTest {
+
+    private static final byte[] CONTENT = "<?xml version=\"1.0\"?><package name=\"caf\u00e9\"/>\n".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 30000)
+    public void compressesAFileOnABackgroundThread() throws Exception {
+        File gzip = new File(this.folder.getRoot(), "ex" + OutputFormat.GZIP.getExtension());
+        write(OutputFormat.GZIP.open(gzip, true));
+        assertArrayEquals(CONTENT, read(new GZIPInputStream(Files.newInputStream(gzip.toPath()))));
+
+        File zip = new File(this.folder.getRoot(), "ex" + OutputFormat.ZIP.getExtension());
+        write(OutputFormat.ZIP.open(zip, true));
+        assertArrayEquals(CONTENT, readEntry(Files.newInputStream(zip.toPath()), "ex.xml"));
+    }
+
+    @Test(timeout = 30000)
+    public void closingAStreamLeavesTheTargetOpen() throws Exception {
+        OpenStream xml = new OpenStream();
+        write(OutputFormat.XML.open(xml, "ex", false));
+        assertArrayEquals(CONTENT, xml.toByteArray());
+
+        OpenStream gzip = new OpenStream();
+        write(OutputFormat.GZIP.open(gzip, "ex", true));
+        assertArrayEquals(CONTENT, read(new GZIPInputStream(new ByteArrayInputStream(gzip.toByteArray()))));
+
+        OpenStream zip = new OpenStream();
+        write(OutputFormat.ZIP.open(zip, "ex", false));
+        assertArrayEquals(CONTENT, readEntry(new ByteArrayInputStream(zip.toByteArray()), "ex.xml"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void aProjectFileIsNotAStream() throws Exception {
+        OutputFormat.QEA.open(new ByteArrayOutputStream(), "ex", false);
+    }
+
+    private static void write(OutputStream out) throws IOException {
+        try (OutputStream stream = out) {
+            // in two parts, the background stream hands over every write
+            stream.write(CONTENT, 0, 10);
+            stream.write(CONTENT, 10, CONTENT.length - 10);
+        }
+    }
+
+    private static byte[] readEntry(InputStream in, String name) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(in)) {
+            ZipEntry entry = zip.getNextEntry();
+            assertEquals(name, entry.getName());
+            byte[] content = read(zip);
+            assertNull(zip.getNextEntry());
+            return content;
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int length; (length = in.read(buffer)) >= 0; ) out.write(buffer, 0, length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Fails when closed, like the body of a response that the server closes afterwards
+     */
+    private static class OpenStream extends ByteArrayOutputStream {
+        @Override
+        public void close() {
+            throw new AssertionError("The target must stay open");
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.alliander.owltouml.exporters;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SqliteTableWriterTest {
+
+    private static final List<String> TABLES = Arrays.asList("t_package", "t_object", "t_attribute", "t_connector");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void movesIdsPastTheProjectAndResolvesGuidReferences() throws Exception {
+        File project = this.folder.newFile("export.qea");
+        SqliteTableWriter writer = new SqliteTableWriter(project, createTemplate().toPath());
+        writer.open("root", "{root}", TABLES);
+        writer.write("t_package", new TableRow().column("Package_ID", "1").column("Name", "ex").column("Parent_ID", "0").column("ea_guid", "{package}"));
+        writer.write("t_object", new TableRow().column("Object_ID", "1").column("Name", "Asset").column("Package_ID", "0").column("ea_guid", "{asset}")
+                .extension("Package_ID", "{package}"));
+        writer.write("t_object", new TableRow().column("Object_ID", "2").column("Name", "Location").column("Package_ID", "0").column("ea_guid", "{location}")
+                .extension("Package_ID", "{package}"));
+        writer.write("t_attribute", new TableRow().column("Object_ID", "3").column("Name", "name").column("ea_guid", "{name}")
+                .extension("Object_ID", "{asset}"));
+        writer.write("t_connector", new TableRow().column("Connector_ID", "4").column("Start_Object_ID", "0").column("End_Object_ID", "0").column("ea_guid", "{locatedAt}")
+                .extension("Start_Object_ID", "{asset}").extension("End_Object_ID", "{location}"));
+        writer.close();
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + project.getAbsolutePath());
+             Statement statement = connection.createStatement()) {
+            // the template already has ids up to 5
+            assertEquals(Arrays.asList(6, 0), query(statement, "SELECT Package_ID, Parent_ID FROM t_package WHERE ea_guid = '{package}'"));
+            assertEquals(Arrays.asList(6, 6), query(statement, "SELECT Object_ID, Package_ID FROM t_object WHERE ea_guid = '{asset}'"));
+            assertEquals(Arrays.asList(7, 6), query(statement, "SELECT Object_ID, Package_ID FROM t_object WHERE ea_guid = '{location}'"));
+            assertEquals(Arrays.asList(8, 6), query(statement, "SELECT ID, Object_ID FROM t_attribute WHERE ea_guid = '{name}'"));
+            assertEquals(Arrays.asList(9, 6, 7), query(statement, "SELECT Connector_ID, Start_Object_ID, End_Object_ID FROM t_connector WHERE ea_guid = '{locatedAt}'"));
+            assertEquals(Collections.singletonList(2), query(statement, "SELECT COUNT(*) FROM t_package"));
+        }
+    }
+
+    @Test
+    public void abortLeavesTheTemplateUnchanged() throws Exception {
+        File project = this.folder.newFile("aborted.qea");
+        SqliteTableWriter writer = new SqliteTableWriter(project, createTemplate().toPath());
+        writer.open("root", "{root}", TABLES);
+        writer.write("t_package", new TableRow().column("Package_ID", "1").column("Name", "ex").column("Parent_ID", "0").column("ea_guid", "{package}"));
+        writer.abort();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + project.getAbsolutePath());
+             Statement statement = connection.createStatement()) {
+            assertEquals(Collections.singletonList(1), query(statement, "SELECT COUNT(*) FROM t_package"));
+        }
+    }
+
+    @Test
+    public void rejectsATableThatIsNotPartOfAProject() throws Exception {
+        SqliteTableWriter writer = new SqliteTableWriter(this.folder.newFile("other.qea"), createTemplate().toPath());
+        try {
+            writer.open("root", "{root}", Collections.singletonList("t_other"));
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("t_other"));
+            return;
+        }
+        throw new AssertionError("The table t_other must be rejected");
+    }
+
+    /**
+     * @return a project with the columns of the tables written here and a package with id 5
+     */
+    private File createTemplate() throws Exception {
+        File template = new File(this.folder.getRoot(), "template.qea");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + template.getAbsolutePath());
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE t_package (Package_ID INTEGER PRIMARY KEY, Name TEXT, Parent_ID INTEGER, ea_guid TEXT)");
+            statement.executeUpdate("CREATE TABLE t_object (Object_ID INTEGER PRIMARY KEY, Name TEXT, Package_ID INTEGER, PDATA1 TEXT, Diagram_ID INTEGER, ea_guid TEXT)");
+            statement.executeUpdate("CREATE TABLE t_attribute (ID INTEGER PRIMARY KEY, Object_ID INTEGER, Name TEXT, ea_guid TEXT)");
+            statement.executeUpdate("CREATE TABLE t_connector (Connector_ID INTEGER PRIMARY KEY, Start_Object_ID INTEGER, End_Object_ID INTEGER, DiagramID INTEGER, ea_guid TEXT)");
+            statement.executeUpdate("CREATE TABLE t_diagram (Diagram_ID INTEGER PRIMARY KEY, Package_ID INTEGER, ea_guid TEXT)");
+            statement.executeUpdate("CREATE TABLE t_diagramobjects (Diagram_ID INTEGER, Object_ID INTEGER)");
+            statement.executeUpdate("INSERT INTO t_package (Package_ID, Name, Parent_ID, ea_guid) VALUES (5, 'Model', 0, '{model}')");
+        }
+        return template;
+    }
+
+    private static List<Integer> query(Statement statement, String sql) throws Exception {
+        try (ResultSet result = statement.executeQuery(sql)) {
+            assertTrue(sql, result.next());
+            Integer[] values = new Integer[result.getMetaData().getColumnCount()];
+            for (int i = 0; i < values.length; i++) values[i] = result.getInt(i + 1);
+            return Arrays.asList(values);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.alliander.owltouml.exporters;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class StreamingTableWriterTest {
+
+    private static final List<String> TABLES = Arrays.asList("t_package", "t_object", "t_attribute", "t_connector");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesTheSameFileAsTheDomWriter() throws Exception {
+        File dom = new File(this.folder.getRoot(), "dom.xml");
+        File streamed = new File(this.folder.getRoot(), "streamed.xml");
+        write(new DomTableWriter(dom));
+        write(new StreamingTableWriter(streamed));
+        assertArrayEquals(Files.readAllBytes(dom.toPath()), Files.readAllBytes(streamed.toPath()));
+    }
+
+    @Test
+    public void writesTheSameStreamAsTheDomWriter() throws Exception {
+        ByteArrayOutputStream dom = new ByteArrayOutputStream();
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        write(new DomTableWriter(dom));
+        write(new StreamingTableWriter(streamed, this.folder.getRoot()));
+        assertArrayEquals(dom.toByteArray(), streamed.toByteArray());
+    }
+
+    @Test
+    public void abortDeletesTheSpoolFiles() throws Exception {
+        StreamingTableWriter writer = new StreamingTableWriter(new File(this.folder.getRoot(), "aborted.xml"));
+        writer.open("root", "{guid}", TABLES);
+        writer.write("t_object", new TableRow().column("name", "A"));
+        writer.abort();
+        assertEquals(0, this.folder.getRoot().list().length);
+    }
+
+    /**
+     * Writes rows with characters the serializer escapes, rows without columns, extensions and an empty table
+     */
+    private static void write(TableWriter writer) throws Exception {
+        writer.open("root & \"more\"", "{guid}", TABLES);
+        writer.write("t_package", new TableRow().column("Name", "<package>").column("Notes", "line\nnext\r\tend").extension());
+        writer.write("t_object", new TableRow().column("name", "caf\u00e9 \ud83d\ude00 'quoted'").extension("Package_ID", "{parent}"));
+        writer.write("t_object", new TableRow());
+        writer.write("t_attribute", new TableRow().column("Name", "").column("Type", "a > b"));
+        writer.close();
+    }
+}
@@ -0,0 +1,92 @@
+package com.alliander.owltouml.loader;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.model.IRI;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class LocalOntologyStoreTest {
+
+    private static final byte[] DOCUMENT = "<http://example.org/remote> a <http://www.w3.org/2002/07/owl#Ontology> .\n".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private HttpServer server;
+
+    @After
+    public void stopServer() {
+        this.release.countDown();
+        if (this.server != null) this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    @Test(timeout = 30000)
+    public void fetchesADocumentOnceAndFindsItOfflineLater() throws Exception {
+        IRI iri = serve("/ontology", false);
+        File cache = this.folder.newFolder("cache");
+        LocalOntologyStore store = new LocalOntologyStore(cache.toPath(), false);
+        IRI document = store.getDocumentIRI(iri);
+        assertNotNull(document);
+        assertArrayEquals(DOCUMENT, Files.readAllBytes(Paths.get(document.toURI())));
+        assertEquals(document, store.getDocumentIRI(iri));
+        assertEquals(1, this.requests.get());
+        // the index is written completely, without temporary files left behind
+        assertEquals(document, new LocalOntologyStore(cache.toPath(), true).getDocumentIRI(iri));
+        for (String name : cache.list()) assertFalse(name, name.endsWith(".part"));
+    }
+
+    @Test(timeout = 30000)
+    public void aStalledServerTimesOut() throws Exception {
+        IRI iri = serve("/stalled", true);
+        LocalOntologyStore store = new LocalOntologyStore(this.folder.newFolder("cache").toPath(), false);
+        store.setTimeout(500, TimeUnit.MILLISECONDS);
+        assertNull(store.getDocumentIRI(iri));
+    }
+
+    /**
+     * @return the IRI of a document served on the loopback interface, the response is held back if stalled
+     */
+    private IRI serve(String path, boolean stalled) throws Exception {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext(path, exchange -> {
+            this.requests.incrementAndGet();
+            try {
+                if (stalled) this.release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, DOCUMENT.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(DOCUMENT);
+            }
+        });
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        return IRI.create("http://" + this.server.getAddress().getHostString() + ":" + this.server.getAddress().getPort() + path);
+    }
+}
@@ -0,0 +1,86 @@
+package com.alliander.owltouml.loader;
+
+import org.junit.After;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyIRIMapper;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+public class ParallelImportLoaderTest {
+
+    private static final IRI ROOT = IRI.create("http://example.org/root");
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void releaseParsers() {
+        this.release.countDown();
+    }
+
+    /**
+     * With a single thread every import only starts after the one before timed out, while its thread still hangs
+     */
+    @Test(timeout = 30000)
+    public void importsThatIgnoreInterruptsDoNotBlockTheLoad() throws Exception {
+        OWLOntologyManager manager = createManager(false);
+        ParallelImportLoader loader = new ParallelImportLoader(manager, 1);
+        loader.setTimeout(2, TimeUnit.SECONDS);
+        OWLOntology root = loader.load(ROOT);
+        assertNotNull(root);
+        assertEquals(1, manager.ontologies().count());
+    }
+
+    @Test(timeout = 30000)
+    public void importsAreSkippedAfterTheTotalTimeout() throws Exception {
+        OWLOntologyManager manager = createManager(false);
+        ParallelImportLoader loader = new ParallelImportLoader(manager, 4);
+        loader.setTotalTimeout(3, TimeUnit.SECONDS);
+        assertNotNull(loader.load(ROOT));
+        assertFalse(manager.contains(IRI.create("http://example.org/slow/1")));
+    }
+
+    @Test(timeout = 30000, expected = OWLOntologyCreationException.class)
+    public void theOntologyItselfCannotBeSkipped() throws Exception {
+        ParallelImportLoader loader = new ParallelImportLoader(createManager(true), 1);
+        loader.setTimeout(200, TimeUnit.MILLISECONDS);
+        loader.load(ROOT);
+    }
+
+    /**
+     * @return a manager that finds the root ontology in the test resources, and hangs on every import until the test
+     * is finished, ignoring interrupts like a blocked socket read
+     */
+    private OWLOntologyManager createManager(boolean slowRoot) throws Exception {
+        IRI document = IRI.create(getClass().getResource("/ontologies/slow-imports.ttl").toURI());
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        manager.getIRIMappers().add((OWLOntologyIRIMapper) iri -> {
+            if (iri.equals(ROOT) && !slowRoot) return document;
+            awaitUninterruptibly();
+            return IRI.create("file:/nonexistent/slow-import.ttl");
+        });
+        return manager;
+    }
+
+    private void awaitUninterruptibly() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                this.release.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
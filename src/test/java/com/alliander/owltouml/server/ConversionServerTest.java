@@ -0,0 +1,50 @@
+package com.alliander.owltouml.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConversionServerTest {
+
+    private ConversionServer server;
+
+    @Before
+    public void start() throws Exception {
+        this.server = new ConversionServer();
+        this.server.start(0);
+    }
+
+    @After
+    public void stop() {
+        this.server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void malformedQueriesAreBadRequests() throws Exception {
+        assertEquals(400, get("/convert?ontology=%zz&prefix=ex"));
+    }
+
+    @Test(timeout = 30000)
+    public void missingParametersAreBadRequests() throws Exception {
+        assertEquals(400, get("/convert?ontology=http%3A%2F%2Fexample.org%2Ftest"));
+    }
+
+    @Test(timeout = 30000)
+    public void statusReportsTheConversions() throws Exception {
+        assertEquals(200, get("/status"));
+    }
+
+    private int get(String path) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + this.server.getPort() + path).openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+}